@@ -1,47 +1,116 @@
 package com.kopieczek.gamble;
 
 import com.kopieczek.gamble.hardware.audio.Apu;
+import com.kopieczek.gamble.hardware.audio.NullRenderer;
 import com.kopieczek.gamble.hardware.audio.StereoRenderer;
 import com.kopieczek.gamble.hardware.cpu.Cpu;
 import com.kopieczek.gamble.hardware.cpu.Word;
 import com.kopieczek.gamble.hardware.cpu.timer.TimerChip;
 import com.kopieczek.gamble.hardware.graphics.Gpu;
+import com.kopieczek.gamble.hardware.memory.Memory;
 import com.kopieczek.gamble.hardware.memory.Mmu;
 import com.kopieczek.gamble.hardware.memory.cartridge.Cartridge;
 import com.kopieczek.gamble.hardware.memory.cartridge.CartridgeLoader;
+import com.kopieczek.gamble.hardware.memory.cartridge.RomImage;
+import com.kopieczek.gamble.hardware.memory.profiling.MemoryProfile;
+import com.kopieczek.gamble.hardware.memory.profiling.MemoryProfiler;
+import com.kopieczek.gamble.hardware.scheduler.Scheduler;
+import com.kopieczek.gamble.savefiles.AutosaveService;
+import com.kopieczek.gamble.savefiles.DirectorySaveFileDb;
 import com.kopieczek.gamble.ui.GambleUi;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class Gamble {
     private static final Logger log = LogManager.getLogger(Gamble.class);
     private static final boolean SHOULD_SKIP_BIOS = false;
+    private static final boolean SHOULD_PROFILE_MEMORY = false;
+    private static final boolean IS_HEADLESS = Boolean.getBoolean("gamble.headless"); // No display or sound
+    private static final String MEMORY_PROFILE_PATH = "memory-profile";
+    private static final String SAVE_DIRECTORY = "saves";
+    private static final int MAX_AUTO_FRAME_SKIP = 3;
+    private static final int TIMER_REGISTERS_START = 0xff04;
+    private static final int TIMER_REGISTERS_END = 0xff07;
+    private static final int SOUND_REGISTERS_START = 0xff10;
+    private static final int SOUND_REGISTERS_END = 0xff3f;
+    private static final int LCD_REGISTERS_START = 0xff40;
+    private static final int LCD_REGISTERS_END = 0xff4b;
+    private static final int EMULATION_STOP_TIMEOUT_SECONDS = 5;
+
+    private static volatile boolean isShuttingDown = false;
+    private static final CountDownLatch emulationStopped = new CountDownLatch(1);
 
     public static void main(String[] args) {
         log.info("Gamble is starting up");
 
         log.info("Setting up hardware");
         Mmu mmu = Mmu.build(SHOULD_SKIP_BIOS);
-        Cpu cpu = new Cpu(mmu.getShieldedMemoryAccess(), mmu.getInterruptLine());
-        Gpu gpu = new Gpu(mmu.getDirectMemoryAccess(),
+        Memory cpuMemory = mmu.getShieldedMemoryAccess();
+        Memory gpuMemory = mmu.getDirectMemoryAccess();
+        if (SHOULD_PROFILE_MEMORY) {
+            MemoryProfiler profiler = new MemoryProfiler();
+            cpuMemory = profiler.instrument(cpuMemory, MemoryProfiler.Source.CPU);
+            gpuMemory = profiler.instrument(gpuMemory, MemoryProfiler.Source.GPU);
+            mmu.setDmaMemoryAccess(profiler.instrument(mmu, MemoryProfiler.Source.DMA));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> saveMemoryProfile(profiler.snapshot())));
+        }
+
+        Cpu cpu = new Cpu(cpuMemory, mmu.getInterruptLine());
+        Gpu gpu = new Gpu(gpuMemory,
                           mmu.getIo(),
                           mmu.getInterruptLine(),
                           mmu.getGraphicsAccessController(),
                           mmu.getOam(),
                           mmu.getVram());
+        gpu.setAutoFrameSkip(MAX_AUTO_FRAME_SKIP);
+        gpu.setHeadless(IS_HEADLESS);
+        gpu.setRenderExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "renderer");
+            thread.setDaemon(true);
+            return thread;
+        }));
         TimerChip timer = new TimerChip(mmu.getIo(), mmu.getInterruptLine());
-        Apu apu = new Apu(mmu.getIo(), getRenderer());
+        Apu apu = new Apu(mmu.getIo(), IS_HEADLESS ? new NullRenderer() : getRenderer());
+
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(mmu);
+        scheduler.register(gpu);
+        scheduler.register(apu);
+        scheduler.register(timer);
+        mmu.setDmaStartListener(() -> scheduler.sync(mmu));
+
+        // Peripherals are only brought up to date when the CPU touches their registers, or when their own events
+        // (e.g. interrupts) come due.
+        mmu.addIoAccessListener(TIMER_REGISTERS_START, TIMER_REGISTERS_END, () -> scheduler.sync(timer));
+        mmu.addIoAccessListener(SOUND_REGISTERS_START, SOUND_REGISTERS_END, () -> scheduler.sync(apu));
+        mmu.addIoAccessListener(LCD_REGISTERS_START, LCD_REGISTERS_END, () -> scheduler.sync(gpu));
 
         log.info("Loading ROM");
-        loadRom(mmu, new File(args[0]));
+        File romFile = new File(args[0]);
+        RomImage rom = loadRom(romFile);
+        if (rom != null) {
+            Cartridge cartridge = CartridgeLoader.loadFrom(rom);
+            mmu.loadCartridge(cartridge);
+            if (CartridgeLoader.hasBattery(rom)) {
+                startAutosave(scheduler, cartridge, romFile.getName());
+            }
+        }
 
-        log.info("Initializing UI");
-        GambleUi gb = new GambleUi(gpu.getScreenBuffer(), mmu.getIo());
-        SwingUtilities.invokeLater(gb::init);
+        if (!IS_HEADLESS) {
+            log.info("Initializing UI");
+            GambleUi gb = new GambleUi(gpu.getScreenBuffer(), mmu.getIo());
+            SwingUtilities.invokeLater(gb::init);
+        }
 
         if (SHOULD_SKIP_BIOS) {
             mmu.setBiosEnabled(false);
@@ -54,27 +123,66 @@ public class Gamble {
         }
 
         log.info("Gamble started");
-        while (true) {
-            int cyclesBefore = cpu.getCycles();
-            cpu.tick();
-            int cycleDelta = cpu.getCycles() - cyclesBefore;
-            if (cpu.isStopped()) {
-                gpu.stop();
-            } else {
-                mmu.stepAhead(cycleDelta);
-                gpu.stepAhead(cycleDelta);
+        try {
+            while (!isShuttingDown) {
+                int cyclesBefore = cpu.getCycles();
+                cpu.tick();
+                int cycleDelta = cpu.getCycles() - cyclesBefore;
+                if (cpu.isStopped()) {
+                    gpu.stop();
+                    scheduler.skip(mmu);
+                    scheduler.skip(gpu);
+                }
+                scheduler.advance(cycleDelta);
             }
-            apu.stepAhead(cycleDelta);
-            timer.tick(cycleDelta);
+        } finally {
+            emulationStopped.countDown();
         }
     }
 
-    private static void loadRom(Mmu mmu, File file) {
+    /**
+     * Asks the emulation loop to finish its current step, and waits for it to do so.
+     */
+    private static void stopEmulation() {
+        isShuttingDown = true;
         try {
-            Cartridge cartridge = CartridgeLoader.loadFrom(file);
-            mmu.loadCartridge(cartridge);
+            if (!emulationStopped.await(EMULATION_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.error("Timed out waiting for emulation to stop");
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for emulation to stop");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void startAutosave(Scheduler scheduler, Cartridge cartridge, String key) {
+        AutosaveService autosave = new AutosaveService(cartridge,
+                                                       DirectorySaveFileDb.initialize(new File(SAVE_DIRECTORY)),
+                                                       key);
+        scheduler.register(autosave);
+        // The final save must not race the emulation thread's own writes to RAM, so stop emulating first.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stopEmulation();
+            autosave.close();
+        }));
+    }
+
+    private static RomImage loadRom(File file) {
+        try {
+            return RomImage.load(file);
         } catch (IOException e) {
             log.error("Failed to load rom", e);
+            return null;
+        }
+    }
+
+    private static void saveMemoryProfile(MemoryProfile profile) {
+        log.info("Saving memory profile to {}.csv and {}.png", MEMORY_PROFILE_PATH, MEMORY_PROFILE_PATH);
+        try (Writer writer = new FileWriter(MEMORY_PROFILE_PATH + ".csv")) {
+            profile.writeCsv(writer);
+            ImageIO.write(profile.renderHeatmap(), "png", new File(MEMORY_PROFILE_PATH + ".png"));
+        } catch (IOException e) {
+            log.error("Failed to save memory profile", e);
         }
     }
 
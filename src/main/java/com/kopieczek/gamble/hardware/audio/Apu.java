@@ -1,11 +1,15 @@
 package com.kopieczek.gamble.hardware.audio;
 
 import com.google.common.collect.ImmutableList;
+import com.kopieczek.gamble.hardware.governor.Governor;
 import com.kopieczek.gamble.hardware.memory.Io;
+import com.kopieczek.gamble.hardware.scheduler.Clocked;
 
 import java.util.List;
 
-public class Apu {
+public class Apu implements Clocked {
+    // Samples are generated in batches of one frame-sequencer step (512Hz).
+    private static final int CYCLES_PER_BATCH = Governor.FREQUENCY_HZ / 512;
     private final Io io;
     private final Renderer renderer;
     private final Mixer mixer;
@@ -20,6 +24,12 @@ public class Apu {
         this(io, renderer, buildStandardChannels(io));
     }
 
+    @Override
+    public int getCyclesUntilNextEvent() {
+        return CYCLES_PER_BATCH;
+    }
+
+    @Override
     public void stepAhead(int cycleDelta) {
         for (int tick = 0; tick < cycleDelta; tick++) {
             short[] sample = mixer.tick();
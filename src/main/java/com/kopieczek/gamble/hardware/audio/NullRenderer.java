@@ -0,0 +1,11 @@
+package com.kopieczek.gamble.hardware.audio;
+
+/**
+ * Discards all audio, for running without a sound device (e.g. headless test runs).
+ */
+public class NullRenderer implements Renderer {
+    @Override
+    public void render(short[] sample) {
+        // Nothing to do
+    }
+}
@@ -15,7 +15,6 @@ public class Cpu {
     private static final Logger log = LogManager.getLogger(Cpu.class);
     private static final Logger traceLog = LogManager.getLogger("cpuTrace");
 
-    private static final int INTERRUPT_ENABLED_FLAG_ADDRESS = 0xffff;
     private static final int INTERRUPT_HANDLERS_START = 0x0040;
     private static final int INTERRUPT_HANDLERS_OFFSET = 0x0008;
 
@@ -101,20 +100,20 @@ public class Cpu {
     public void tick() {
         log.trace("Cpu cycle starts");
         if (isHalted) {
-            isHalted = (unsafeRead(INTERRUPT_ENABLED_FLAG_ADDRESS) & interrupts.checkInterrupts() & 0x1f) == 0;
+            isHalted = !interrupts.isInterruptPending();
             log.debug("CPU is halted. Stay halted? " + isHalted);
             cycles += 4;
             return;
         }
 
         if (isStopped) {
-            isStopped = (unsafeRead(INTERRUPT_ENABLED_FLAG_ADDRESS) & interrupts.checkInterrupts() & 0x1f) == 0;
+            isStopped = !interrupts.isInterruptPending();
             log.debug("CPU is stopped. Stay stopped? " + isStopped);
             cycles += 4;
             return;
         }
 
-        if (interruptsEnabled) {
+        if (interruptsEnabled && interrupts.isInterruptPending()) {
             handleInterrupts();
         }
 
@@ -224,9 +223,7 @@ public class Cpu {
     }
 
     boolean isEnabled(Interrupt interrupt) {
-        final int flagValue = unsafeRead(INTERRUPT_ENABLED_FLAG_ADDRESS);
-        final int bitMask = (0x01 << interrupt.ordinal());
-        return (flagValue & bitMask) > 0;
+        return interrupts.isInterruptEnabled(interrupt);
     }
 
     private static Map<Integer, Function<Cpu, Integer>> loadOperations() {
@@ -3,8 +3,9 @@ package com.kopieczek.gamble.hardware.cpu.timer;
 import com.kopieczek.gamble.hardware.cpu.Interrupt;
 import com.kopieczek.gamble.hardware.memory.InterruptLine;
 import com.kopieczek.gamble.hardware.memory.TimerRegisters;
+import com.kopieczek.gamble.hardware.scheduler.Clocked;
 
-public class TimerChip {
+public class TimerChip implements Clocked {
     private static final int CYCLES_PER_DIV_TICK = 256;
 
     private final TimerRegisters registers;
@@ -16,36 +17,77 @@ public class TimerChip {
         this.interrupts = interrupts;
     }
 
+    /**
+     * Advances the timer by the given number of clock cycles in constant time.
+     *
+     * DIV ticks whenever the internal cycle count passes a multiple of 256, and TIMA whenever it passes a multiple
+     * of the current TAC period, so both are advanced by the number of multiples crossed. The TAC period is sampled
+     * once per call, and writes to DIV only clear the register, not the internal count.
+     */
     public void tick(int clockCycles) {
-        int cyclesPerCounterTick = registers.getCyclesPerTimerCounterTick();
+        final long start = ticks;
+        final long end = start + clockCycles;
 
-        for (int i = 0; i < clockCycles; i++) {
-            ticks++;
-            if (ticks % CYCLES_PER_DIV_TICK == 0) {
-                incrementDiv();
-            }
-            if (registers.isTimerEnabled() && (ticks % cyclesPerCounterTick == 0)) {
-                incrementCounter();
+        int divTicks = (int) (end / CYCLES_PER_DIV_TICK - start / CYCLES_PER_DIV_TICK);
+        if (divTicks > 0) {
+            registers.setTimerDiv((registers.getTimerDiv() + divTicks) & 0xff);
+        }
+
+        if (registers.isTimerEnabled()) {
+            int cyclesPerCounterTick = registers.getCyclesPerTimerCounterTick();
+            long counterTicks = end / cyclesPerCounterTick - start / cyclesPerCounterTick;
+            if (counterTicks > 0) {
+                advanceCounter(counterTicks);
             }
         }
 
         // No value of ticksPerCounter is slower than once per 1024 ticks,
         // and all possible values are factors of 1024.
-        ticks %= 1024;
+        ticks = (int) (end % 1024);
+    }
+
+    @Override
+    public void stepAhead(int cycles) {
+        tick(cycles);
     }
 
-    private void incrementDiv() {
-        int oldDiv = registers.getTimerDiv();
-        registers.setTimerDiv((oldDiv + 1) % 256);
+    /**
+     * The timer is caught up whenever its registers are accessed, so the only event of its own is the overflow
+     * interrupt.
+     */
+    @Override
+    public int getCyclesUntilNextEvent() {
+        return getCyclesUntilInterrupt();
     }
 
-    private void incrementCounter() {
+    /**
+     * Returns the number of clock cycles until TIMA next overflows and raises the timer interrupt, assuming TAC is
+     * not changed in the meantime; or {@link Integer#MAX_VALUE} if the timer is disabled.
+     */
+    public int getCyclesUntilInterrupt() {
+        if (!registers.isTimerEnabled()) {
+            return Integer.MAX_VALUE;
+        }
+
+        long cyclesPerCounterTick = registers.getCyclesPerTimerCounterTick();
+        long counterTicksNeeded = 0x100 - registers.getTimerCounter();
+        long overflowAt = (ticks / cyclesPerCounterTick + counterTicksNeeded) * cyclesPerCounterTick;
+        return (int) Math.min(Integer.MAX_VALUE, overflowAt - ticks);
+    }
+
+    private void advanceCounter(long counterTicks) {
         int oldCounter = registers.getTimerCounter();
-        if (oldCounter < 0xff) {
-            registers.setTimerCounter(oldCounter + 1);
-        } else {
-            registers.resetTimerCounter();
-            interrupts.setInterrupt(Interrupt.TIMER);
+        int ticksToOverflow = 0x100 - oldCounter;
+        if (counterTicks < ticksToOverflow) {
+            registers.setTimerCounter(oldCounter + (int) counterTicks);
+            return;
         }
+
+        // After the first overflow TIMA restarts from TMA, and thereafter overflows every (0x100 - TMA) ticks.
+        registers.resetTimerCounter();
+        interrupts.setInterrupt(Interrupt.TIMER);
+        int modulo = registers.getTimerCounter();
+        long ticksAfterOverflow = counterTicks - ticksToOverflow;
+        registers.setTimerCounter(modulo + (int) (ticksAfterOverflow % (0x100 - modulo)));
     }
 }
@@ -0,0 +1,185 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws frames captured by the GPU into the screen buffer, on whichever executor it is given. By default frames are
+ * drawn on the calling thread as soon as they are submitted.
+ *
+ * The renderer works on one frame at a time. While it draws a frame, the GPU captures the next one into a second
+ * snapshot; if the renderer is still busy when that frame is complete, the GPU drops it.
+ */
+class FrameRenderer {
+    static final boolean DEBUG_MODE = false;
+    private static final int DISPLAY_WIDTH = Gpu.DISPLAY_WIDTH;
+    private static final byte NO_SPRITE = 0;
+    private static final byte BACKGROUND_SPRITE = 1;
+    private final ScreenBuffer screenBuffer;
+    private final byte[] linePriority = new byte[DISPLAY_WIDTH]; // Which pixels of the current line hold sprites
+    private final AtomicBoolean isBusy = new AtomicBoolean(false);
+    private Executor executor = Runnable::run;
+
+    FrameRenderer(ScreenBuffer screenBuffer) {
+        this.screenBuffer = screenBuffer;
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    boolean isBusy() {
+        return isBusy.get();
+    }
+
+    /**
+     * Starts drawing the given frame and publishes it when done. The caller must check that the renderer isn't busy
+     * first, and must leave the snapshot alone until the renderer is idle again.
+     */
+    void submit(FrameSnapshot frame) {
+        if (!isBusy.compareAndSet(false, true)) {
+            throw new IllegalStateException("Frame submitted while the renderer is still busy");
+        }
+
+        executor.execute(() -> {
+            try {
+                render(frame);
+            } finally {
+                isBusy.set(false);
+            }
+        });
+    }
+
+    private void render(FrameSnapshot frame) {
+        if (frame.isBlank) {
+            Arrays.fill(screenBuffer.getScratch(), Color.WHITE.getRGB());
+            Arrays.fill(screenBuffer.getScratchFingerprints(), ScreenBuffer.NO_FINGERPRINT);
+        } else {
+            for (int line = 0; line < frame.lines.length; line++) {
+                if (frame.lines[line].isCaptured) {
+                    renderLine(frame, line);
+                }
+            }
+            if (DEBUG_MODE) {
+                renderGrid();
+            }
+        }
+
+        screenBuffer.swapScratchBuffers(frame.cycleTimestamp);
+    }
+
+    private void renderLine(FrameSnapshot frame, int currentLine) {
+        LineSnapshot line = frame.lines[currentLine];
+
+        // If the scratch frame already holds this line as drawn from the same inputs, there's nothing to do.
+        long[] fingerprints = screenBuffer.getScratchFingerprints();
+        if (!DEBUG_MODE && line.fingerprint == fingerprints[currentLine]) {
+            return;
+        }
+        fingerprints[currentLine] = DEBUG_MODE ? ScreenBuffer.NO_FINGERPRINT : line.fingerprint;
+
+        // Reset the priority plane so the background can spot which pixels have background sprites.
+        Arrays.fill(linePriority, NO_SPRITE);
+        renderSprites(frame, line, true, currentLine);
+        renderTiles(frame, line, currentLine);
+        renderWindowTiles(frame, line, currentLine);
+        renderSprites(frame, line, false, currentLine);
+    }
+
+    private void renderTiles(FrameSnapshot frame, LineSnapshot line, int currentLine) {
+        int column = 0;
+        int firstPixel = line.backgroundFirstPixel;
+        for (int tile = 0; column < DISPLAY_WIDTH; tile++) {
+            // Only the first and last spans can be partial tiles.
+            int spanLength = Math.min(8 - firstPixel, DISPLAY_WIDTH - column);
+            blitTileSpan(frame, line, line.backgroundRows[tile] + firstPixel, spanLength, currentLine, column, true);
+            column += spanLength;
+            firstPixel = 0;
+        }
+    }
+
+    private void renderWindowTiles(FrameSnapshot frame, LineSnapshot line, int currentLine) {
+        int column = line.windowColumn;
+        int firstPixel = line.windowFirstPixel;
+        for (int tile = 0; tile < line.windowTileCount; tile++) {
+            int spanLength = Math.min(8 - firstPixel, DISPLAY_WIDTH - column);
+            blitTileSpan(frame, line, line.windowRows[tile] + firstPixel, spanLength, currentLine, column, false);
+            column += spanLength;
+            firstPixel = 0;
+        }
+    }
+
+    /**
+     * Draws part of one row of a tile onto the current line.
+     * @param isBehindBackgroundSprites If true, color 0 leaves background sprite pixels visible.
+     */
+    private void blitTileSpan(FrameSnapshot frame, LineSnapshot line, int src, int length, int currentLine,
+                              int column, boolean isBehindBackgroundSprites) {
+        byte[] colorIds = frame.tileColorIds;
+        int[] shades = line.backgroundShades;
+        int[] scratch = screenBuffer.getScratch();
+        int dest = currentLine * DISPLAY_WIDTH + column;
+        for (int idx = 0; idx < length; idx++) {
+            int colorId = colorIds[src + idx];
+            if (!isBehindBackgroundSprites || colorId > 0 || linePriority[column + idx] != BACKGROUND_SPRITE) {
+                scratch[dest + idx] = shades[colorId];
+            }
+        }
+    }
+
+    private void renderSprites(FrameSnapshot frame, LineSnapshot line, boolean isBackground, int currentLine) {
+        // Blit sprites in reverse priority order
+        for (int idx = line.spriteCount - 1; idx >= 0; idx--) {
+            if (line.isBackgroundSprite[idx] == isBackground) {
+                renderSpriteRow(frame, line, idx, currentLine);
+            }
+        }
+    }
+
+    private void renderSpriteRow(FrameSnapshot frame, LineSnapshot line, int idx, int currentLine) {
+        int spriteX = line.spriteX[idx];
+        byte priority = line.isBackgroundSprite[idx] ? BACKGROUND_SPRITE : NO_SPRITE;
+        int[] palette = (line.spritePalettes[idx] == 0) ? line.spritePalette0 : line.spritePalette1;
+        byte[] colorIds = frame.spriteColorIds;
+        int src = line.spriteRows[idx];
+        int[] scratch = screenBuffer.getScratch();
+        final int lineStart = currentLine * DISPLAY_WIDTH;
+        for (int xOffset = 0; xOffset < 8; xOffset++) {
+            int x = spriteX + xOffset;
+            int colorId = colorIds[src + xOffset];
+            // Color 0 is always transparent for sprites
+            if (0 <= x && x < DISPLAY_WIDTH && colorId != 0) {
+                int argb = palette[colorId];
+                if (DEBUG_MODE) {
+                    argb = tintForDebug(argb, line.spriteRowOffsets[idx]);
+                }
+                scratch[lineStart + x] = argb;
+                linePriority[x] = priority;
+            }
+        }
+    }
+
+    private static int tintForDebug(int argb, int rowOffset) {
+        Color old = new Color(argb);
+        if (rowOffset < 8) {
+            return new Color(255, old.getGreen() / 2, old.getBlue() / 2).getRGB();
+        } else if (rowOffset < 16){
+            return new Color(old.getRed() / 2, old.getGreen() / 2, 255).getRGB();
+        } else {
+            throw new IllegalArgumentException("Row offset " + rowOffset);
+        }
+    }
+
+    private void renderGrid() {
+        int[] scratch = screenBuffer.getScratch();
+        for (int rowIdx = 0; rowIdx < Gpu.DISPLAY_HEIGHT; rowIdx++) {
+            for (int colIdx = 0; colIdx < DISPLAY_WIDTH; colIdx++) {
+                if ((rowIdx % 8) * (colIdx % 8) == 0) {
+                    scratch[rowIdx * DISPLAY_WIDTH + colIdx] = Color.RED.getRGB();
+                }
+            }
+        }
+    }
+}
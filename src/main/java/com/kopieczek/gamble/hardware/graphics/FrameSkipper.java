@@ -0,0 +1,109 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import com.kopieczek.gamble.hardware.governor.Governor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which frames the GPU should draw.
+ *
+ * With a fixed frame skip of n, one frame in every n + 1 is drawn. In automatic mode, the wall-clock time elapsed
+ * since a reference point is compared with the emulated time elapsed, as the {@link Governor} does. Frame times
+ * jitter around the emulated time even on a host that keeps up, so only once the host has fallen a whole frame
+ * behind is one more frame skipped per cycle, up to a limit; after a second of keeping up, one fewer is skipped to
+ * see whether the host can now cope.
+ *
+ * The reference point moves up whenever the skip changes, and whenever the emulation is ahead of the wall clock,
+ * so that time spent waiting (e.g. on audio) is never banked against later slow frames.
+ */
+class FrameSkipper {
+    private static final Logger log = LogManager.getLogger(FrameSkipper.class);
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int ON_TIME_FRAMES_BEFORE_BACKING_OFF = 60;
+    private final LongSupplier nanoTime;
+    private int maxFramesToSkip = 0; // Zero when automatic frame skipping is off
+    private int framesToSkip = 0;
+    private int framesSkipped = 0;
+    private int onTimeFrames = 0;
+    private long referenceNanos = -1;
+    private long referenceCycles = 0;
+    private long lastFrameCycles = 0;
+
+    FrameSkipper(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    void setFixed(int framesToSkip) {
+        this.maxFramesToSkip = 0;
+        this.framesToSkip = framesToSkip;
+    }
+
+    void setAutomatic(int maxFramesToSkip) {
+        this.maxFramesToSkip = maxFramesToSkip;
+        this.framesToSkip = 0;
+        this.referenceNanos = -1;
+        this.onTimeFrames = 0;
+    }
+
+    int getFramesToSkip() {
+        return framesToSkip;
+    }
+
+    /**
+     * Called as each frame starts.
+     * @param cycles The GPU's total cycle count at the start of the frame.
+     */
+    boolean shouldRenderFrame(long cycles) {
+        if (maxFramesToSkip > 0) {
+            adjust(cycles);
+        }
+
+        if (framesSkipped < framesToSkip) {
+            framesSkipped++;
+            return false;
+        }
+
+        framesSkipped = 0;
+        return true;
+    }
+
+    private void adjust(long cycles) {
+        long now = nanoTime.getAsLong();
+        if (referenceNanos < 0) {
+            resetReference(now, cycles);
+        } else {
+            long frameNanos = toNanos(cycles - lastFrameCycles);
+            long lagNanos = (now - referenceNanos) - toNanos(cycles - referenceCycles);
+            if (lagNanos >= frameNanos) {
+                onTimeFrames = 0;
+                resetReference(now, cycles);
+                if (framesToSkip < maxFramesToSkip) {
+                    framesToSkip++;
+                    log.debug("Host is falling behind; now skipping {} frames in {}", framesToSkip, framesToSkip + 1);
+                }
+            } else {
+                if (lagNanos < 0) {
+                    resetReference(now, cycles);
+                }
+                if (++onTimeFrames >= ON_TIME_FRAMES_BEFORE_BACKING_OFF && framesToSkip > 0) {
+                    onTimeFrames = 0;
+                    resetReference(now, cycles);
+                    framesToSkip--;
+                    log.debug("Host is keeping up; now skipping {} frames in {}", framesToSkip, framesToSkip + 1);
+                }
+            }
+        }
+        lastFrameCycles = cycles;
+    }
+
+    private void resetReference(long now, long cycles) {
+        referenceNanos = now;
+        referenceCycles = cycles;
+    }
+
+    private static long toNanos(long cycles) {
+        return cycles * NANOS_PER_SECOND / Governor.FREQUENCY_HZ;
+    }
+}
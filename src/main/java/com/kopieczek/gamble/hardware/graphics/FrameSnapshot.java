@@ -0,0 +1,29 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+/**
+ * The captured lines of one frame, together with the tile and sprite pixel data they are drawn from.
+ * Pixel data is taken once per frame from the copy-on-write snapshots of the GPU's caches.
+ */
+class FrameSnapshot {
+    final LineSnapshot[] lines = new LineSnapshot[Gpu.DISPLAY_HEIGHT];
+    byte[] tileColorIds;
+    byte[] spriteColorIds;
+    long cycleTimestamp;
+    boolean isBlank; // Set for the blank frame shown while the LCD is stopped; no lines are drawn
+
+    FrameSnapshot() {
+        for (int line = 0; line < lines.length; line++) {
+            lines[line] = new LineSnapshot();
+        }
+    }
+
+    /**
+     * Forgets every captured line, ready for the next frame to be captured.
+     */
+    void clear() {
+        for (LineSnapshot line : lines) {
+            line.isCaptured = false;
+        }
+        isBlank = false;
+    }
+}
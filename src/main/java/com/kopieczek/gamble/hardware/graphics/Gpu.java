@@ -1,54 +1,126 @@
 package com.kopieczek.gamble.hardware.graphics;
 
-import com.google.common.collect.Lists;
 import com.kopieczek.gamble.hardware.cpu.Interrupt;
 import com.kopieczek.gamble.hardware.memory.*;
+import com.kopieczek.gamble.hardware.scheduler.Clocked;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.awt.*;
-import java.util.Arrays;
+import java.util.concurrent.Executor;
 
-public class Gpu {
+public class Gpu implements Clocked {
     private static final Logger log = LogManager.getLogger(Gpu.class);
     public static final int DISPLAY_WIDTH = 160;
     public static final int DISPLAY_HEIGHT= 144;
     public static final int VIRTUAL_TOTAL_HEIGHT = 153; // Including VBlank
-    private static final boolean DEBUG_MODE = false;
+    private static final int CYCLES_PER_LINE = 456;
+    private static final long FINGERPRINT_SEED = 0xcbf29ce484222325L;
+    private static final long FINGERPRINT_MULTIPLIER = 0x9e3779b97f4a7c15L;
     private final Memory memory;
     private final Io io;
+    private final LcdRegisters lcd;
     private final InterruptLine interrupts;
     private final GraphicsAccessController graphicsAccessController;
     private final SpriteMap spriteMap;
+    private final Sprite[] lineSprites = new Sprite[SpriteMap.MAX_SPRITES_PER_LINE];
+    private final TileCache tileCache;
+    private final SpritePatternCache spritePatternCache;
     private final ScreenBuffer screenBuffer = new ScreenBuffer(DISPLAY_WIDTH, DISPLAY_HEIGHT);
+    private final FrameRenderer renderer = new FrameRenderer(screenBuffer);
+
+    // Frames are captured into one snapshot while the renderer may still be drawing the other
+    private FrameSnapshot capturingFrame = new FrameSnapshot();
+    private FrameSnapshot renderingFrame = new FrameSnapshot();
+
     private Mode mode = Mode.OAM_READ;
     private int modeClock = 0;
     private int currentLine = 0;
+    private long totalCycles = 0;
+    private final FrameSkipper frameSkipper = new FrameSkipper(System::nanoTime);
+    private boolean isRenderingFrame = true;
+    private boolean isHeadless = false;
+    private boolean isFrameRequested = false;
+
+    // Tile addressing, latched at the start of each line
+    private boolean areTileMapEntriesSigned;
+    private int firstTileIndex;
 
     public Gpu(Memory memory, Io io, InterruptLine interrupts, GraphicsAccessController graphicsAccessController,
                Oam oam, Vram vram) {
         this.memory = memory;
         this.io = io;
+        this.lcd = io.getLcdRegisters();
         this.interrupts = interrupts;
         this.graphicsAccessController = graphicsAccessController;
-        this.spriteMap = new SpriteMap(io, oam, vram);
+        this.spriteMap = new SpriteMap(io, oam);
         this.spriteMap.init();
+        this.tileCache = new TileCache(vram);
+        this.spritePatternCache = new SpritePatternCache(vram);
     }
 
     public ScreenBuffer getScreenBuffer() {
         return screenBuffer;
     }
 
+    /**
+     * Draws only one frame in every framesToSkip + 1. LCD timing and interrupts are unaffected, and the screen keeps
+     * showing the last frame drawn.
+     */
+    public void setFrameSkip(int framesToSkip) {
+        frameSkipper.setFixed(framesToSkip);
+    }
+
+    /**
+     * Skips up to maxFramesToSkip frames in a row whenever the host can't draw frames as fast as they are emulated.
+     */
+    public void setAutoFrameSkip(int maxFramesToSkip) {
+        frameSkipper.setAutomatic(maxFramesToSkip);
+    }
+
+    /**
+     * Draws frames on the given executor rather than on the emulation thread. The GPU still captures what each line
+     * shows at the end of its OAM scan; only the pixel work moves. Frames are handed over one at a time, and a frame
+     * completed while the renderer is still busy with the previous one is dropped.
+     */
+    public void setRenderExecutor(Executor executor) {
+        renderer.setExecutor(executor);
+    }
+
+    /**
+     * In headless mode the GPU keeps exact LCD timing, including interrupts and VRAM/OAM lockout, but captures and
+     * draws nothing, so the screen buffer is left alone. Entering headless mode drops any frame in progress; leaving
+     * it takes effect from the start of the next frame.
+     */
+    public void setHeadless(boolean isHeadless) {
+        this.isHeadless = isHeadless;
+        if (isHeadless) {
+            isRenderingFrame = false;
+            capturingFrame.clear();
+        }
+    }
+
+    /**
+     * Draws the next whole frame even if it would otherwise be skipped or the GPU is headless, e.g. to take a
+     * screenshot. The frame is published to the screen buffer as usual once it is complete.
+     */
+    public void requestFrame() {
+        isFrameRequested = true;
+    }
+
+    @Override
     public void stepAhead(int cycles) {
+        totalCycles += cycles;
         modeClock += cycles;
 
         if (modeClock >= mode.duration) {
             switch (mode) {
                 case OAM_READ:
+                    if (isRenderingFrame) {
+                        captureLine(currentLine);
+                    }
                     changeMode(Mode.VRAM_READ);
                     break;
                 case VRAM_READ:
-                    renderLine(currentLine);
                     changeMode(Mode.HBLANK);
                     graphicsAccessController.setVramAccessible(true);
                     graphicsAccessController.setOamAccessible(true);
@@ -59,7 +131,9 @@ public class Gpu {
                     if (currentLine == DISPLAY_HEIGHT - 1) {
                         interrupts.setInterrupt(Interrupt.V_BLANK);
                         io.handleVBlank();
-                        screenBuffer.swapScratchBuffers();
+                        if (isRenderingFrame) {
+                            submitFrame();
+                        }
                         changeMode(Mode.VBLANK);
                     } else {
                         changeMode(Mode.OAM_READ);
@@ -69,6 +143,7 @@ public class Gpu {
                     break;
                 case VBLANK:
                     currentLine = 0;
+                    isRenderingFrame = shouldRenderNextFrame();
                     changeMode(Mode.OAM_READ);
                     graphicsAccessController.setOamAccessible(false);
                     io.handleOam();
@@ -77,177 +152,169 @@ public class Gpu {
                     throw new IllegalStateException("Unknown GPU mode " + mode);
             }
         } else if (mode == Mode.VBLANK) {
-            currentLine = DISPLAY_HEIGHT + modeClock / 456;
+            currentLine = DISPLAY_HEIGHT + modeClock / CYCLES_PER_LINE;
         }
 
         io.setLcdCurrentLine(currentLine);
         io.setLcdControllerMode(mode.toLcdMode());
     }
 
+    @Override
+    public int getCyclesUntilNextEvent() {
+        int cyclesUntilModeChange = mode.duration - modeClock;
+        if (mode == Mode.VBLANK) {
+            // LY keeps counting through VBlank.
+            return Math.min(cyclesUntilModeChange, CYCLES_PER_LINE - modeClock % CYCLES_PER_LINE);
+        }
+        return cyclesUntilModeChange;
+    }
+
     public void stop() {
-        Color[][] scratch = screenBuffer.getScratch();
-        for (int y = 0; y < scratch.length; y++) {
-            for (int x = 0; x < scratch[0].length; x++) {
-                scratch[y][x] = Color.WHITE;
-            }
+        if (!isHeadless) {
+            capturingFrame.clear();
+            capturingFrame.isBlank = true;
+            submitFrame();
         }
 
-        screenBuffer.swapScratchBuffers();
         modeClock = 0;
         currentLine = 0;
         mode = Mode.OAM_READ;
+        isRenderingFrame = !isHeadless;
     }
 
-    private void renderLine(int currentLine) {
-        java.util.List<Sprite> sprites = getAllSprites(currentLine);
-        clearLine(currentLine);
-        renderBackgroundSprites(sprites, currentLine);
-        renderTiles(currentLine);
-        renderWindowTiles(currentLine);
-        renderForegroundSprites(sprites, currentLine);
-        if (DEBUG_MODE) {
-            renderGrid();
-        }
-    }
-
-    private void renderWindowTiles(int currentLine) {
-        if (io.isWindowDisplayEnabled() &&
-                -7 <= io.getWindowX() && io.getWindowX() <= 159 &&
-                0 <= io.getWindowY() && io.getWindowY() <= 143) {
-            if (currentLine < io.getWindowY()) {
-                return;
-            }
-
-            final int tileY = (currentLine - io.getWindowY()) / 8;
-
-            Color[][] scratch = screenBuffer.getScratch();
-            for (int currentColumn = Math.max(io.getWindowX(), 0); currentColumn < DISPLAY_WIDTH; currentColumn++) {
-                int x = currentColumn - io.getWindowX();
-
-                int tileX = x / 8;
-                int tileMapIdx = 32 * tileY + tileX;
-                int tileDataStart = getWindowTileDataAddress(tileMapIdx);
-                int[] rowData = getRowData(tileDataStart, (currentLine - io.getWindowY()) % 8);
-                int[] rowColors = extractColors(rowData);
-                int currentColor = rowColors[x % 8];
-                scratch[currentLine][currentColumn] = decodeColor(currentColor);
-            }
+    private boolean shouldRenderNextFrame() {
+        if (isFrameRequested) {
+            isFrameRequested = false;
+            return true;
         }
+        return !isHeadless && frameSkipper.shouldRenderFrame(totalCycles);
     }
 
-    private void clearLine(int currentLine) {
-        // Null out line so the background can spot which pixels have background sprites.
-        Color[][] scratch = screenBuffer.getScratch();
-        for (int col = 0; col < DISPLAY_WIDTH; col++) {
-            scratch[currentLine][col] = null;
+    /**
+     * Hands the captured frame to the renderer along with snapshots of the tile data, and starts capturing the next
+     * frame into the other snapshot. If the renderer is still busy, the captured frame is dropped instead.
+     */
+    private void submitFrame() {
+        if (!renderer.isBusy()) {
+            capturingFrame.tileColorIds = tileCache.snapshotColorIds();
+            capturingFrame.spriteColorIds = spritePatternCache.snapshotColorIds();
+            capturingFrame.cycleTimestamp = totalCycles;
+            renderer.submit(capturingFrame);
+
+            FrameSnapshot submitted = capturingFrame;
+            capturingFrame = renderingFrame;
+            renderingFrame = submitted;
         }
+        capturingFrame.clear();
     }
 
-    private void renderTiles(int currentLine) {
-        Color[][] scratch = screenBuffer.getScratch();
-        final int tileY = ((currentLine + io.getScrollY()) / 8) % 32;
-        for (int currentColumn = 0; currentColumn < DISPLAY_WIDTH; currentColumn++) {
-            int x = currentColumn + io.getScrollX();
-            int tileX = (x / 8) % 32;
-            int tileMapIdx = 32 * tileY + tileX;
-            int tileDataStart = getBackgroundTileDataAddress(tileMapIdx);
-            int[] rowData = getRowData(tileDataStart, (currentLine + io.getScrollY()) % 8);
-            int[] rowColors = extractColors(rowData);
-            int currentColor = rowColors[x % 8];
-            if (currentColor > 0 || (scratch[currentLine][currentColumn] == null)) {
-                scratch[currentLine][currentColumn] = decodeColor(currentColor);
-            }
+    /**
+     * Records everything the given line shows, as it stands now, in the frame being captured.
+     */
+    private void captureLine(int currentLine) {
+        LineSnapshot line = capturingFrame.lines[currentLine];
+        System.arraycopy(lcd.getBackgroundShades(), 0, line.backgroundShades, 0, line.backgroundShades.length);
+        System.arraycopy(lcd.getSpritePalette0(), 0, line.spritePalette0, 0, line.spritePalette0.length);
+        System.arraycopy(lcd.getSpritePalette1(), 0, line.spritePalette1, 0, line.spritePalette1.length);
+        areTileMapEntriesSigned = lcd.areTileMapEntriesSigned();
+        firstTileIndex = (lcd.getTileDataStartAddress() - Mmu.VRAM_START) / 16;
+
+        long hash = mix(FINGERPRINT_SEED, currentLine);
+        for (int colorId = 0; colorId < 4; colorId++) {
+            hash = mix(hash, line.backgroundShades[colorId]);
+            hash = mix(hash, line.spritePalette0[colorId]);
+            hash = mix(hash, line.spritePalette1[colorId]);
         }
-    }
+        hash = captureBackground(currentLine, line, hash);
+        hash = captureWindow(currentLine, line, hash);
+        hash = captureSprites(currentLine, line, hash);
 
-    private java.util.List<Sprite> getAllSprites(int currentLine) {
-        java.util.List<Sprite> sprites = spriteMap.getSpritesForRow(currentLine);
-        sprites = sprites.subList(0, Math.min(10, sprites.size())); // Only 10 sprites can be displayed on each line
-        return Lists.reverse(sprites);  // Blit sprites in reverse priority order
+        // The fingerprint covers every input to the line's pixels, including the version of each tile it draws.
+        line.fingerprint = (hash == ScreenBuffer.NO_FINGERPRINT) ? 1 : hash;
+        line.isCaptured = true;
     }
 
-    private void renderBackgroundSprites(java.util.List<Sprite> sprites, int currentLine) {
-        sprites.stream()
-               .filter(sprite -> sprite.getAttributes().getZPosition().equals(SpriteAttributes.ZPosition.BACKGROUND))
-               .forEach(sprite -> renderSpriteRow(sprite, currentLine));
-    }
-
-    private void renderForegroundSprites(java.util.List<Sprite> sprites, int currentLine) {
-        sprites.stream()
-                .filter(sprite -> sprite.getAttributes().getZPosition().equals(SpriteAttributes.ZPosition.FOREGROUND))
-                .forEach(sprite -> renderSpriteRow(sprite, currentLine));
-    }
-
-    private void renderSpriteRow(Sprite sprite, int currentLine) {
-        int spriteX = sprite.getAttributes().getX();
-        int spriteY = sprite.getAttributes().getY();
-        int rowOffset = currentLine - spriteY;
-        Color[] rowPixels = Arrays.copyOf(sprite.getPixels()[rowOffset], sprite.getPixels()[rowOffset].length);
-        if (DEBUG_MODE) {
-            for (int idx = 0; idx < rowPixels.length; idx++) {
-                Color old = rowPixels[idx];
-                if (rowOffset < 8) {
-                    rowPixels[idx] = new Color(255, old.getGreen() / 2, old.getBlue() / 2);
-                } else if (rowOffset < 16){
-                    rowPixels[idx] = new Color(old.getRed() / 2, old.getGreen() / 2, 255);
-                } else {
-                    throw new IllegalArgumentException("Row offset " + rowOffset);
-                }
-            }
-        }
-
-        Color[][] scratch = screenBuffer.getScratch();
-        for (int xOffset = 0; xOffset < rowPixels.length; xOffset++) {
-            int x = spriteX + xOffset;
-            if (0 <= x && x < DISPLAY_WIDTH && rowPixels[xOffset].getAlpha() > 0) {
-                scratch[currentLine][x] = rowPixels[xOffset];
-            }
+    private long captureBackground(int currentLine, LineSnapshot line, long hash) {
+        final int y = currentLine + lcd.getScrollY();
+        final int scrollX = lcd.getScrollX();
+        final int mapStart = lcd.getBackgroundTileMapStartAddress();
+        final int rowStart = 32 * ((y / 8) % 32);
+        line.backgroundFirstPixel = scrollX % 8;
+        hash = mix(hash, line.backgroundFirstPixel);
+        for (int tile = 0; tile < LineSnapshot.MAX_TILES; tile++) {
+            int tileIndex = getTileIndex(mapStart, rowStart + (scrollX / 8 + tile) % 32);
+            line.backgroundRows[tile] = TileCache.rowOffset(tileIndex, y % 8);
+            hash = mixTile(hash, line.backgroundRows[tile], tileIndex);
         }
+        return hash;
     }
 
-    private void renderGrid() {
-        Color[][] scratch = screenBuffer.getScratch();
-        for (int rowIdx = 0; rowIdx < DISPLAY_HEIGHT; rowIdx++) {
-            for (int colIdx = 0; colIdx < DISPLAY_WIDTH; colIdx++) {
-                if ((rowIdx % 8) * (colIdx % 8) == 0) {
-                    scratch[rowIdx][colIdx] = Color.RED;
-                }
+    private long captureWindow(int currentLine, LineSnapshot line, long hash) {
+        final int windowX = lcd.getWindowX();
+        final int windowY = lcd.getWindowY();
+        line.windowTileCount = 0;
+        if (lcd.isWindowDisplayEnabled() &&
+                -7 <= windowX && windowX <= 159 &&
+                0 <= windowY && windowY <= 143 &&
+                currentLine >= windowY) {
+            final int y = currentLine - windowY;
+            final int mapStart = lcd.getWindowTileMapStartAddress();
+            final int rowStart = 32 * (y / 8);
+            final int x = Math.max(windowX, 0) - windowX;
+            line.windowColumn = x + windowX;
+            line.windowFirstPixel = x % 8;
+            for (int tile = x / 8; tile <= (DISPLAY_WIDTH - 1 - windowX) / 8; tile++) {
+                int tileIndex = getTileIndex(mapStart, rowStart + tile);
+                line.windowRows[line.windowTileCount++] = TileCache.rowOffset(tileIndex, y % 8);
+                hash = mixTile(hash, line.windowRows[line.windowTileCount - 1], tileIndex);
             }
+            hash = mix(hash, line.windowColumn);
+            hash = mix(hash, line.windowFirstPixel);
         }
+        return mix(hash, line.windowTileCount);
     }
 
-    private static int[] extractColors(int[] rowData) {
-        int[] colors = new int[8];
-        for (int idx = 0; idx < 8; idx++) {
-            int mask = 0x80 >> idx;
-            boolean lowBit = (rowData[0] & mask) > 0;
-            boolean highBit = (rowData[1] & mask) > 0;
-            colors[idx] = (highBit ? 2 : 0) + (lowBit ? 1 : 0);
+    private long captureSprites(int currentLine, LineSnapshot line, long hash) {
+        line.spriteCount = spriteMap.getSpritesForRow(currentLine, lineSprites);
+        for (int idx = 0; idx < line.spriteCount; idx++) {
+            Sprite sprite = lineSprites[idx];
+            SpriteAttributes attributes = sprite.getAttributes();
+            int rowOffset = currentLine - attributes.getY();
+            int patternIndex = sprite.getPatternIndexForRow(rowOffset);
+            line.spriteX[idx] = attributes.getX();
+            line.spriteRows[idx] = SpritePatternCache.rowOffset(patternIndex,
+                                                                sprite.isXFlipped(),
+                                                                sprite.isYFlipped(),
+                                                                rowOffset % 8);
+            line.spriteRowOffsets[idx] = rowOffset;
+            line.spritePalettes[idx] = attributes.getPalette();
+            line.isBackgroundSprite[idx] = attributes.getZPosition() == SpriteAttributes.ZPosition.BACKGROUND;
+            hash = mix(hash, line.spriteX[idx]);
+            hash = mix(hash, line.spritePalettes[idx]);
+            hash = mix(hash, line.isBackgroundSprite[idx] ? 1 : 0);
+            hash = mixTile(hash, line.spriteRows[idx], patternIndex);
         }
-
-        return colors;
-    }
-
-    private Color decodeColor(int colorId) {
-        return io.getShadeForBackgroundColor(colorId);
-    }
-
-    private int[] getRowData(int tileDataStart, int rowIdx) {
-        int rowDataStart = tileDataStart + rowIdx * 2;
-        return new int[] {memory.readByte(rowDataStart), memory.readByte(rowDataStart + 1)};
+        return mix(hash, line.spriteCount);
     }
 
-    private int getBackgroundTileDataAddress(int tileMapIdx) {
-        return getTileDataAddress(io.getBackgroundTileMapStartAddress(), tileMapIdx);
+    /**
+     * Mixes in a row of tile data: where it is found, and the version of the tile it belongs to.
+     */
+    private long mixTile(long hash, int rowOffset, int tileIndex) {
+        return mix(mix(hash, rowOffset), tileCache.getVersion(tileIndex));
     }
 
-    private int getWindowTileDataAddress(int tileMapIdx) {
-        return getTileDataAddress(io.getWindowTileMapStartAddress(), tileMapIdx);
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * FINGERPRINT_MULTIPLIER;
+        return hash ^ (hash >>> 29);
     }
 
-    private int getTileDataAddress(int mapStartAddress, int tileMapIndex) {
+    /**
+     * Looks up a tile map entry and returns the tile it refers to, numbered from the start of VRAM.
+     */
+    private int getTileIndex(int mapStartAddress, int tileMapIndex) {
         int tileDataIdx = memory.readByte(mapStartAddress + tileMapIndex);
-        if (io.areTileMapEntriesSigned()) {
+        if (areTileMapEntriesSigned) {
             // Slightly magic.
             // If tile map entries are signed then 0x00 indicates tile 0, 0x80 indicates tile 128,
             // 0xff indicates tile -1, etc.
@@ -256,7 +323,7 @@ public class Gpu {
             tileDataIdx = (tileDataIdx + 128) % 256;
         }
 
-        return io.getTileDataStartAddress() + tileDataIdx * 16;
+        return firstTileIndex + tileDataIdx;
     }
 
     private void changeMode(Mode newMode) {
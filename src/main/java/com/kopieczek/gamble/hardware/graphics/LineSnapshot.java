@@ -0,0 +1,36 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+/**
+ * Everything needed to draw one line, captured by the GPU at the end of the line's OAM scan so that the line can be
+ * drawn later, possibly on another thread.
+ *
+ * Tile map entries and sprite attributes are resolved when the line is captured, down to where each tile or pattern
+ * row starts in the decoded pixel data. The pixel data itself belongs to the {@link FrameSnapshot} holding the line.
+ */
+class LineSnapshot {
+    static final int MAX_TILES = Gpu.DISPLAY_WIDTH / 8 + 1; // A line can show part of a tile at each end
+
+    boolean isCaptured = false;
+    long fingerprint = ScreenBuffer.NO_FINGERPRINT;
+
+    final int[] backgroundShades = new int[4];
+    final int[] spritePalette0 = new int[4];
+    final int[] spritePalette1 = new int[4];
+
+    // Offsets of tile rows in the frame's tile data, from left to right.
+    // The first background tile is entered at backgroundFirstPixel, and the first window tile at windowFirstPixel.
+    final int[] backgroundRows = new int[MAX_TILES];
+    int backgroundFirstPixel;
+    final int[] windowRows = new int[MAX_TILES];
+    int windowTileCount;
+    int windowColumn;
+    int windowFirstPixel;
+
+    // Sprites on the line, highest priority first. Rows are offsets in the frame's sprite pattern data.
+    int spriteCount;
+    final int[] spriteX = new int[SpriteMap.MAX_SPRITES_PER_LINE];
+    final int[] spriteRows = new int[SpriteMap.MAX_SPRITES_PER_LINE];
+    final int[] spriteRowOffsets = new int[SpriteMap.MAX_SPRITES_PER_LINE]; // Row within the sprite, 0-15
+    final int[] spritePalettes = new int[SpriteMap.MAX_SPRITES_PER_LINE];
+    final boolean[] isBackgroundSprite = new boolean[SpriteMap.MAX_SPRITES_PER_LINE];
+}
@@ -1,50 +1,123 @@
 package com.kopieczek.gamble.hardware.graphics;
 
 import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Lock-free triple buffer between the GPU, which draws into the scratch frame, and the UI, which shows the screen
+ * frame. The third frame sits between them holding the most recently published image.
+ *
+ * Frames are stored as packed ARGB ints in row-major order, i.e. pixel (x, y) is at index y * width + x.
+ * Each line of a frame also carries a fingerprint of the inputs it was drawn from; lines with equal fingerprints
+ * have identical pixels, which lets both the GPU and the UI skip lines that haven't changed.
+ */
 public class ScreenBuffer {
-    private Color[][] screen;
-    private Color[][] scratch;
-    private Color[][] passive;
-    private final Object lock = new Object();
+    private static final int INDEX_MASK = 0x03;
+    private static final int FRESH_FLAG = 0x04; // Set when the middle frame has not yet been picked up by the UI
+    public static final long NO_FINGERPRINT = 0;
+
+    private final int width;
+    private final int height;
+    private final Frame[] frames = new Frame[3];
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int scratch = 0; // Only touched by the producer
+    private int screen = 1; // Only touched by the consumer
+    private long nextSequenceNumber = 1;
 
     public ScreenBuffer(int width, int height) {
-        screen = new Color[height][];
-        scratch = new Color[height][];
-        passive = new Color[height][];
-        for (int rowIdx = 0; rowIdx < height; rowIdx++) {
-            screen[rowIdx] = new Color[width];
-            scratch[rowIdx] = new Color[width];
-            passive[rowIdx] = new Color[width];
-            for (int colIdx = 0; colIdx < width; colIdx++) {
-                screen[rowIdx][colIdx] = Color.BLACK;
-                scratch[rowIdx][colIdx] = Color.BLACK;
-                passive[rowIdx][colIdx] = Color.BLACK;
-            }
+        this.width = width;
+        this.height = height;
+        for (int idx = 0; idx < frames.length; idx++) {
+            frames[idx] = new Frame(width, height);
         }
     }
 
-    public Color[][] getScratch() {
-        return scratch;
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getScratch() {
+        return frames[scratch].pixels;
     }
 
-    public Color[][] getScreen() {
-        return screen;
+    /**
+     * The line fingerprints of the scratch frame. Whoever draws a line must record its fingerprint here, or set it to
+     * {@link #NO_FINGERPRINT} if it has none.
+     */
+    long[] getScratchFingerprints() {
+        return frames[scratch].lineFingerprints;
     }
 
-    public void updateScreenBuffer() {
-        synchronized (lock) {
-            Color[][] tmp = screen;
-            screen = passive;
-            passive = tmp;
+    /**
+     * Publishes the scratch frame as the newest complete frame and hands back a stale one to draw into.
+     * Never blocks; if the UI hasn't picked up the previous frame yet, that frame is dropped.
+     */
+    public void swapScratchBuffers(long cycleTimestamp) {
+        Frame published = frames[scratch];
+        published.sequenceNumber = nextSequenceNumber++;
+        published.cycleTimestamp = cycleTimestamp;
+        scratch = middle.getAndSet(scratch | FRESH_FLAG) & INDEX_MASK;
+    }
+
+    /**
+     * Moves the newest published frame to the screen, if there is one the screen hasn't shown yet.
+     * @return true if the screen frame changed.
+     */
+    public boolean updateScreenBuffer() {
+        if ((middle.get() & FRESH_FLAG) == 0) {
+            return false;
         }
+
+        screen = middle.getAndSet(screen) & INDEX_MASK;
+        return true;
+    }
+
+    public Frame getScreen() {
+        return frames[screen];
     }
 
-    public void swapScratchBuffers() {
-        synchronized (lock) {
-            Color[][] tmp = scratch;
-            scratch = passive;
-            passive = tmp;
+    public static class Frame {
+        private final int[] pixels;
+        private final long[] lineFingerprints;
+        private long sequenceNumber = 0;
+        private long cycleTimestamp = 0;
+
+        private Frame(int width, int height) {
+            pixels = new int[width * height];
+            lineFingerprints = new long[height];
+            Arrays.fill(pixels, Color.BLACK.getRGB());
+        }
+
+        public int[] getPixels() {
+            return pixels;
+        }
+
+        /**
+         * Returns the fingerprint of the given line, or {@link #NO_FINGERPRINT} if it is unknown.
+         * A line whose fingerprint is equal to a known fingerprint of the same line in another frame has the same
+         * pixels as it, so needn't be redrawn.
+         */
+        public long getLineFingerprint(int line) {
+            return lineFingerprints[line];
+        }
+
+        /**
+         * Counts up from 1 with each published frame; 0 for the blank frame shown before anything is published.
+         */
+        public long getSequenceNumber() {
+            return sequenceNumber;
+        }
+
+        /**
+         * The GPU cycle count at which the frame was completed.
+         */
+        public long getCycleTimestamp() {
+            return cycleTimestamp;
         }
     }
 }
@@ -1,50 +1,40 @@
 package com.kopieczek.gamble.hardware.graphics;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimap;
 import com.kopieczek.gamble.hardware.memory.Io;
 import com.kopieczek.gamble.hardware.memory.Oam;
 import com.kopieczek.gamble.hardware.memory.SpriteChangeListener;
-import com.kopieczek.gamble.hardware.memory.Vram;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.awt.*;
-import java.util.*;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.Arrays;
 
+/**
+ * Tracks which sprites appear on each line of the screen.
+ *
+ * Sets of sprites are held as 40-bit masks, with bit n standing for the sprite at OAM index n. Attribute changes are
+ * only recorded as they happen; the affected sprites are brought up to date when a line is next requested.
+ */
 class SpriteMap implements SpriteChangeListener {
+    static final int MAX_SPRITES_PER_LINE = 10;
     private static final Logger log = LogManager.getLogger(SpriteMap.class);
+    private static final long ALL_SPRITES = (1L << Oam.TOTAL_ATTRIBUTES) - 1;
     private final Io io;
     private final Oam oam;
-    private final Vram vram;
-    private final List<SpriteAttributes> allAttributes = new ArrayList<>();
-    private final List<SpritePattern> patterns = new ArrayList<>();
-    private final List<Sprite> sprites = new ArrayList<>();
-    private final Set<Integer> dirtyAttributes = new HashSet<>();
-    private final Set<Integer> dirtyPatterns = new HashSet<>();
-    private final Set<Integer> dirtySprites = new HashSet<>();
+    private final Sprite[] sprites = new Sprite[Oam.TOTAL_ATTRIBUTES];
+    private long dirtyAttributes = 0;
 
-    // NB: The following fields are only guaranteed to be up to date when dirtyAttributes is empty.
-    private final Multimap<Integer, Integer> patternToSpriteMap = ArrayListMultimap.create();
-    private final Multimap<Integer, Integer> spriteToPatternMap = ArrayListMultimap.create();
-    private final Multimap<Integer, Integer> rowToSpriteMap = ArrayListMultimap.create();
-    private final Multimap<Integer, Integer> spriteToRowMap = ArrayListMultimap.create();
+    // NB: The following fields are only guaranteed to be up to date when dirtyAttributes is zero.
+    private final long[] lineMasks = new long[Gpu.DISPLAY_HEIGHT];
+    private final int[] firstLines = new int[Oam.TOTAL_ATTRIBUTES];
+    private final int[] endLines = new int[Oam.TOTAL_ATTRIBUTES]; // Exclusive
 
     private boolean useTallSprites = false;
-    private Color[] palette0;
-    private Color[] palette1;
 
-    SpriteMap(Io io, Oam oam, Vram vram) {
+    SpriteMap(Io io, Oam oam) {
         this.io = io;
         this.oam = oam;
-        this.vram = vram;
         io.register(this);
         oam.register(this);
-        vram.register(this);
     }
 
     public void init() {
@@ -52,228 +42,103 @@ class SpriteMap implements SpriteChangeListener {
     }
 
     private void reloadAll() {
-        reloadAllAttributes();
-        reloadAllPatterns();
         loadSpriteHeight();
-        loadPalettes();
-        rebuildAllSprites();
-    }
-
-    private void loadPalettes() {
-        palette0 = io.loadPalette0();
-        palette1 = io.loadPalette1();
+        Arrays.fill(lineMasks, 0L);
+        for (int spriteIdx = 0; spriteIdx < Oam.TOTAL_ATTRIBUTES; spriteIdx++) {
+            loadAttributes(spriteIdx);
+        }
+        dirtyAttributes = 0;
     }
 
-    private void reloadAllAttributes() {
-        allAttributes.clear();
-        dirtyAttributes.clear();
-        rowToSpriteMap.clear();
-        spriteToRowMap.clear();
-        patternToSpriteMap.clear();
-        spriteToPatternMap.clear();
-        IntStream.range(0, Oam.TOTAL_ATTRIBUTES).forEach(idx -> {
-            int[] data = oam.getAttributeBytes(idx);
-            SpriteAttributes attrs = SpriteAttributes.parse(idx, data);
-            allAttributes.add(attrs);
-            addMappingsForSprite(idx, attrs);
-        });
+    private void loadSpriteHeight() {
+        useTallSprites = (io.getSpriteHeight() == 16);
     }
 
     private void reloadDirtyAttributes() {
-        reloadAttributes(dirtyAttributes);
-    }
-
-    private void reloadAttributes(Set<Integer> attrsToReload) {
-        removeMappingsForSprites(attrsToReload);
-
-        attrsToReload.forEach(spriteIndex -> {
-            // Reload attributes
-            int[] data = oam.getAttributeBytes(spriteIndex);
-            SpriteAttributes newAttrs = SpriteAttributes.parse(spriteIndex, data);
-            allAttributes.set(spriteIndex, newAttrs);
-
-            // Add new attribute-based mappings for the reloaded value.
-            addMappingsForSprite(spriteIndex, newAttrs);
-        });
-        dirtyAttributes.removeAll(attrsToReload);
-
-    }
-
-    private void addMappingsForSprite(int spriteIdx, SpriteAttributes spriteAttrs) {
-        getPatternsUsed(spriteAttrs).forEach(pattern -> {
-            patternToSpriteMap.put(pattern, spriteIdx);
-            spriteToPatternMap.put(spriteIdx, pattern);
-        });
-        getRowsUsed(spriteAttrs).forEach(row -> {
-            rowToSpriteMap.put(row, spriteIdx);
-            spriteToRowMap.put(spriteIdx, row);
-        });
-    }
-
-    private void removeMappingsForSprites(Collection<Integer> sprites) {
-        sprites.forEach(spriteIdx -> {
-            Collection<Integer> patterns = spriteToPatternMap.get(spriteIdx);
-            Collection<Integer> rows = spriteToRowMap.get(spriteIdx);
-            patterns.forEach(pattern -> {
-                    patternToSpriteMap.remove(pattern, spriteIdx);
-            });
-            rows.forEach(row -> {
-                rowToSpriteMap.remove(row, spriteIdx);
-            });
-            spriteToPatternMap.removeAll(spriteIdx);
-            spriteToRowMap.removeAll(spriteIdx);
-        });
-    }
-
-    private void reloadAllPatterns() {
-        assert(dirtyAttributes.size() == 0);
-        patterns.clear();
-        dirtyPatterns.clear();
-        IntStream.range(0, Vram.TOTAL_SPRITE_PATTERNS).forEach(patternIdx -> {
-            int[] compressedPattern = vram.getPatternBytes(patternIdx);
-            patterns.add(SpritePattern.fromCompressed(compressedPattern));
-            dirtySprites.addAll(patternToSpriteMap.get(patternIdx));
-        });
-    }
-
-    private void reloadPatterns(Collection<Integer> patternsToReload) {
-        assert(dirtyAttributes.size() == 0);
-        patternsToReload.forEach(patternIdx -> {
-            int[] compressedPattern = vram.getPatternBytes(patternIdx);
-            patterns.set(patternIdx, SpritePattern.fromCompressed(compressedPattern));
-            dirtySprites.addAll(patternToSpriteMap.get(patternIdx));
-        });
+        while (dirtyAttributes != 0) {
+            int spriteIdx = Long.numberOfTrailingZeros(dirtyAttributes);
+            dirtyAttributes &= dirtyAttributes - 1;
+            removeFromLines(spriteIdx);
+            loadAttributes(spriteIdx);
+        }
     }
 
-    private void ensureSpritesAreClean(Collection<Integer> spriteIndexes) {
-        reloadDirtyAttributes();
-
-        Set<Integer> patternsToReload = spriteIndexes.stream()
-                .map(allAttributes::get) // Don't use the sprite object's attributes here - they may be stale
-                .flatMap(sprite -> getPatternsUsed(sprite).stream())
-                .filter(dirtyPatterns::contains)
-                .collect(Collectors.toSet());
-        reloadPatterns(patternsToReload);
+    private void loadAttributes(int spriteIdx) {
+        SpriteAttributes attrs = SpriteAttributes.parse(spriteIdx, oam.getAttributeBytes(spriteIdx));
+        sprites[spriteIdx] = new Sprite(attrs, useTallSprites);
 
-        List<Integer> spritesToRebuild = spriteIndexes.stream().filter(dirtySprites::contains).collect(Collectors.toList());
-        rebuildSprites(spritesToRebuild);
+        int height = useTallSprites ? 16 : 8;
+        firstLines[spriteIdx] = Math.max(attrs.getY(), 0);
+        endLines[spriteIdx] = Math.min(attrs.getY() + height, Gpu.DISPLAY_HEIGHT);
+        long bit = 1L << spriteIdx;
+        for (int line = firstLines[spriteIdx]; line < endLines[spriteIdx]; line++) {
+            lineMasks[line] |= bit;
+        }
     }
 
-    private void ensureRowIsClean(int rowIdx) {
-        // We have to validate attributes first, or we can't reliably tell which sprites are on the row.
-        reloadDirtyAttributes();
-
-        Collection<Integer> spritesOnRow = rowToSpriteMap.get(rowIdx);
-        ensureSpritesAreClean(spritesOnRow);
+    private void removeFromLines(int spriteIdx) {
+        long mask = ~(1L << spriteIdx);
+        for (int line = firstLines[spriteIdx]; line < endLines[spriteIdx]; line++) {
+            lineMasks[line] &= mask;
+        }
     }
 
     /**
-     * Return all sprites that overlap the given row, in descending priority order.
+     * Finds the (at most 10) sprites that are drawn on the given row, in descending priority order.
      * Priority is defined by the following rules:
      *  1) Sprites with a lower x coordinate have a higher priority
      *  2) If sprites are equal under (1), the sprite with the lower attribute index has the higher priority
      * @param rowIdx The row in question
-     * @return Sprites overlapping the given row, in descending priority order.
+     * @param dest Array of length at least {@link #MAX_SPRITES_PER_LINE} to receive the sprites.
+     * @return The number of sprites written to dest.
      */
-    List<Sprite> getSpritesForRow(int rowIdx) {
-        ensureRowIsClean(rowIdx);
-        return rowToSpriteMap.get(rowIdx).stream()
-                .map(sprites::get)
-                .sorted(Comparator.comparingInt(Sprite::getAttributeIndex))
-                .sorted(Comparator.comparingInt(sprite -> sprite.getAttributes().getX()))
-                .collect(Collectors.toList());
-    }
-
-    private void loadSpriteHeight() {
-        useTallSprites = (io.getSpriteHeight() == 16);
-    }
+    int getSpritesForRow(int rowIdx, Sprite[] dest) {
+        // We have to validate attributes first, or we can't reliably tell which sprites are on the row.
+        reloadDirtyAttributes();
 
-    private void rebuildAllSprites() {
-        sprites.clear();
-        dirtySprites.clear();
-        allAttributes.forEach(attributes -> {
-            if (useTallSprites) {
-                sprites.add(buildTallSprite(attributes));
-            } else {
-                sprites.add(buildShortSprite(attributes));
+        int count = 0;
+        long remaining = lineMasks[rowIdx];
+        while (remaining != 0) {
+            // Sprites come out in index order, so inserting after any with an equal x keeps rule 2.
+            int spriteIdx = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            Sprite sprite = sprites[spriteIdx];
+            int x = sprite.getAttributes().getX();
+            if (count == MAX_SPRITES_PER_LINE && x >= dest[count - 1].getAttributes().getX()) {
+                continue;
             }
-        });
-    }
 
-    private void rebuildSprites(Collection<Integer> spritesToRebuild) {
-        spritesToRebuild.forEach(spriteIdx -> {
-            SpriteAttributes attributes = allAttributes.get(spriteIdx);
-            Sprite sprite;
-            if (useTallSprites) {
-                sprite = buildTallSprite(attributes);
-            } else {
-                sprite = buildShortSprite(attributes);
+            int insertAt = Math.min(count, MAX_SPRITES_PER_LINE - 1);
+            while (insertAt > 0 && dest[insertAt - 1].getAttributes().getX() > x) {
+                dest[insertAt] = dest[insertAt - 1];
+                insertAt--;
             }
-            sprites.set(spriteIdx, sprite);
-        });
-        dirtySprites.removeAll(spritesToRebuild);
-    }
-
-    private Sprite buildShortSprite(SpriteAttributes attributes) {
-        SpritePattern pattern = patterns.get(attributes.getPatternIndex());
-        return new Sprite(attributes, pattern, palette0, palette1);
-    }
-
-    private Sprite buildTallSprite(SpriteAttributes attributes) {
-        int pattern1Index = (attributes.getPatternIndex()) & 0xfe;
-        int pattern2Index = (attributes.getPatternIndex()) | 0x01;
-        SpritePattern pattern1 = patterns.get(pattern1Index);
-        SpritePattern pattern2 = patterns.get(pattern2Index);
-        return new Sprite(attributes, pattern1, pattern2, palette0, palette1);
-    }
-
-    private Set<Integer> getPatternsUsed(SpriteAttributes attrs) {
-        int mainPattern = attrs.getPatternIndex();
-        if (useTallSprites) {
-            int twinnedPattern = mainPattern ^ 0x01;  // Flip final bit
-            return ImmutableSet.of(mainPattern, twinnedPattern);
-        } else {
-            return ImmutableSet.of(mainPattern);
+            dest[insertAt] = sprite;
+            count = Math.min(count + 1, MAX_SPRITES_PER_LINE);
         }
-    }
 
-    private Set<Integer> getRowsUsed(SpriteAttributes attrs) {
-        int numRows = useTallSprites ? 16 : 8;
-        int minRow = attrs.getY();
-        int maxRow = minRow + numRows;
-        Set<Integer> results = IntStream.range(minRow, maxRow).boxed().collect(Collectors.toSet());
-        return results;
+        return count;
     }
 
     @Override
     public void onSpriteAttributesModified(int spriteIndex) {
-        dirtyAttributes.add(spriteIndex);
-        dirtySprites.add(spriteIndex);
+        dirtyAttributes |= 1L << spriteIndex;
     }
 
     @Override
     public void onSpritePatternModified(int patternIndex) {
-        dirtyPatterns.add(patternIndex);
-        // We can't reliably mark the associated sprites dirty here, since there may be outstanding dirty attributes,
-        // in which case it's not possible to determine which sprites are using which patterns.
-        // Instead we enforce the following:
-        //   1. When ensuring sprites are clean, they must explicitly check to see if their pattern(s) are dirty.
-        //   2. Reloading patterns may only occur when all attributes are clean.
-        //   3. When a pattern is reloaded, we must immediately mark all sprites using the pattern as dirty.
-        //      (We can determine the set of affected sprites reliably since by 2. the attributes are all clean)
+        // Sprites don't hold pattern data; SpritePatternCache picks up the change directly from VRAM.
     }
 
     @Override
     public void onSpriteHeightChanged(boolean areTallSpritesEnabled) {
         log.debug("Tall sprites status changed. Enabled=" + areTallSpritesEnabled);
         useTallSprites = areTallSpritesEnabled;
-        IntStream.range(0, Oam.TOTAL_ATTRIBUTES).forEach(dirtyAttributes::add);
+        dirtyAttributes = ALL_SPRITES;
     }
 
     @Override
     public void onSpritePaletteChanged() {
-        palette0 = io.loadPalette0();
-        palette1 = io.loadPalette1();
-        IntStream.range(0, Vram.TOTAL_SPRITE_PATTERNS).forEach(dirtyPatterns::add);
+        // Palettes are applied as sprites are drawn, so there's nothing to rebuild.
     }
 }
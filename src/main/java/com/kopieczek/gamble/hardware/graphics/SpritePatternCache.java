@@ -0,0 +1,77 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import com.kopieczek.gamble.hardware.memory.TileChangeListener;
+import com.kopieczek.gamble.hardware.memory.Vram;
+
+/**
+ * Holds every sprite pattern decoded into 2-bit color ids, in all four combinations of horizontal and vertical flip.
+ * Patterns are decoded on first use and thrown away again whenever VRAM reports that they have been written to.
+ * Palettes are applied as sprites are drawn, so palette changes don't affect the cache.
+ * Like {@link TileCache}, it can hand out copy-on-write snapshots of its decoded patterns.
+ */
+class SpritePatternCache implements TileChangeListener {
+    private static final int PIXELS_PER_PATTERN = 64;
+    private static final int ORIENTATIONS = 4;
+    private static final int X_FLIP = 0x01;
+    private static final int Y_FLIP = 0x02;
+    private final Vram vram;
+    private byte[] colorIds = new byte[Vram.TOTAL_SPRITE_PATTERNS * ORIENTATIONS * PIXELS_PER_PATTERN];
+    private boolean isShared = false;
+    private final boolean[] isDecoded = new boolean[Vram.TOTAL_SPRITE_PATTERNS];
+
+    SpritePatternCache(Vram vram) {
+        this.vram = vram;
+        vram.register(this);
+    }
+
+    @Override
+    public void onTileModified(int tileIndex) {
+        if (tileIndex < Vram.TOTAL_SPRITE_PATTERNS) {
+            isDecoded[tileIndex] = false;
+        }
+    }
+
+    /**
+     * Returns where the given row of a flipped pattern starts in a snapshot of the cache. The row is counted
+     * after flipping.
+     */
+    static int rowOffset(int patternIndex, boolean isXFlipped, boolean isYFlipped, int row) {
+        int orientation = (isXFlipped ? X_FLIP : 0) | (isYFlipped ? Y_FLIP : 0);
+        return (patternIndex * ORIENTATIONS + orientation) * PIXELS_PER_PATTERN + row * 8;
+    }
+
+    /**
+     * Decodes every pattern and returns the decoded color ids as they stand. The returned array is never written to
+     * again.
+     */
+    byte[] snapshotColorIds() {
+        for (int patternIndex = 0; patternIndex < Vram.TOTAL_SPRITE_PATTERNS; patternIndex++) {
+            if (!isDecoded[patternIndex]) {
+                decode(patternIndex);
+            }
+        }
+        isShared = true;
+        return colorIds;
+    }
+
+    private void decode(int patternIndex) {
+        if (isShared) {
+            colorIds = colorIds.clone();
+            isShared = false;
+        }
+        int[] patternBytes = vram.getPatternBytes(patternIndex);
+        for (int orientation = 0; orientation < ORIENTATIONS; orientation++) {
+            int pixelIdx = (patternIndex * ORIENTATIONS + orientation) * PIXELS_PER_PATTERN;
+            for (int row = 0; row < 8; row++) {
+                int srcRow = (orientation & Y_FLIP) > 0 ? 7 - row : row;
+                int lowBits = patternBytes[2 * srcRow];
+                int highBits = patternBytes[2 * srcRow + 1];
+                for (int col = 0; col < 8; col++) {
+                    int shift = (orientation & X_FLIP) > 0 ? col : 7 - col;
+                    colorIds[pixelIdx++] = (byte) ((((highBits >> shift) & 1) << 1) | ((lowBits >> shift) & 1));
+                }
+            }
+        }
+        isDecoded[patternIndex] = true;
+    }
+}
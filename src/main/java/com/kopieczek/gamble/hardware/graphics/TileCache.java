@@ -0,0 +1,76 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import com.kopieczek.gamble.hardware.memory.TileChangeListener;
+import com.kopieczek.gamble.hardware.memory.Vram;
+
+/**
+ * Holds every tile in VRAM decoded into 2-bit color ids, one byte per pixel.
+ * Tiles are decoded on first use and thrown away again whenever VRAM reports that they have been written to.
+ *
+ * Snapshots of the decoded tiles can be handed to another thread. They are copy-on-write: the cache moves to a fresh
+ * copy of its array the next time it decodes a tile, so a snapshot never changes after it is taken.
+ */
+class TileCache implements TileChangeListener {
+    private static final int PIXELS_PER_TILE = 64;
+    private final Vram vram;
+    private byte[] colorIds = new byte[Vram.TOTAL_TILES * PIXELS_PER_TILE];
+    private boolean isShared = false;
+    private final boolean[] isDecoded = new boolean[Vram.TOTAL_TILES];
+    private final int[] versions = new int[Vram.TOTAL_TILES];
+
+    TileCache(Vram vram) {
+        this.vram = vram;
+        vram.register(this);
+    }
+
+    @Override
+    public void onTileModified(int tileIndex) {
+        isDecoded[tileIndex] = false;
+        versions[tileIndex]++;
+    }
+
+    /**
+     * Returns a counter that changes whenever the given tile is written to.
+     */
+    int getVersion(int tileIndex) {
+        return versions[tileIndex];
+    }
+
+    /**
+     * Returns where the 8 color ids of the given tile row start in a snapshot of the cache.
+     */
+    static int rowOffset(int tileIndex, int y) {
+        return tileIndex * PIXELS_PER_TILE + y * 8;
+    }
+
+    /**
+     * Decodes every tile and returns the decoded color ids as they stand. The returned array is never written to again.
+     */
+    byte[] snapshotColorIds() {
+        for (int tileIndex = 0; tileIndex < Vram.TOTAL_TILES; tileIndex++) {
+            if (!isDecoded[tileIndex]) {
+                decode(tileIndex);
+            }
+        }
+        isShared = true;
+        return colorIds;
+    }
+
+    private void decode(int tileIndex) {
+        if (isShared) {
+            colorIds = colorIds.clone();
+            isShared = false;
+        }
+        int[] tileBytes = vram.getTileBytes(tileIndex);
+        int pixelIdx = tileIndex * PIXELS_PER_TILE;
+        for (int row = 0; row < 8; row++) {
+            int lowBits = tileBytes[2 * row];
+            int highBits = tileBytes[2 * row + 1];
+            for (int col = 0; col < 8; col++) {
+                int shift = 7 - col;
+                colorIds[pixelIdx++] = (byte) ((((highBits >> shift) & 1) << 1) | ((lowBits >> shift) & 1));
+            }
+        }
+        isDecoded[tileIndex] = true;
+    }
+}
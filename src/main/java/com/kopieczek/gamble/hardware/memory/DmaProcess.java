@@ -1,9 +1,11 @@
 package com.kopieczek.gamble.hardware.memory;
 
 public class DmaProcess {
+    private static final int TRANSFER_LENGTH = 160;
+    private final int[] buffer = new int[TRANSFER_LENGTH];
     private int sourceAddress;
     private int targetAddress;
-    private int copyTicksLeft = 160;
+    private int copyTicksLeft = TRANSFER_LENGTH;
     private int restTicksLeft = 2;
 
     DmaProcess(int sourceAddress, int targetAddress) {
@@ -11,21 +13,22 @@ public class DmaProcess {
         this.targetAddress = targetAddress;
     }
 
-    void tick(Mmu mmu, int cycles) {
-        for (int i = 0; i < cycles; i++) {
-            tick(mmu);
+    void tick(Memory memory, int cycles) {
+        // One byte is copied per tick once the rest period is over, so copy this call's share as a single block.
+        int restTicks = Math.min(cycles, restTicksLeft);
+        restTicksLeft -= restTicks;
+        int bytesToCopy = Math.min(cycles - restTicks, copyTicksLeft);
+        if (bytesToCopy > 0) {
+            memory.readBlock(sourceAddress, buffer, 0, bytesToCopy);
+            memory.writeBlock(targetAddress, buffer, 0, bytesToCopy);
+            sourceAddress += bytesToCopy;
+            targetAddress += bytesToCopy;
+            copyTicksLeft -= bytesToCopy;
         }
     }
 
-    private void tick(Mmu mmu) {
-        if (restTicksLeft > 0) {
-            restTicksLeft--;
-        } else if (copyTicksLeft > 0) {
-            mmu.setByte(targetAddress, mmu.readByte(sourceAddress));
-            sourceAddress++;
-            targetAddress++;
-            copyTicksLeft--;
-        }
+    int getCyclesUntilFinished() {
+        return restTicksLeft + copyTicksLeft;
     }
 
     boolean isFinished() {
@@ -0,0 +1,61 @@
+package com.kopieczek.gamble.hardware.memory;
+
+import com.kopieczek.gamble.hardware.cpu.Interrupt;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Holds the interrupt flag (IF, 0xff0f) and interrupt enable (IE, 0xffff) registers as plain fields,
+ * so that raising and checking interrupts never needs to go through address decoding.
+ */
+class InterruptController implements InterruptLine {
+    private static final Logger log = LogManager.getLogger(InterruptController.class);
+    private static final int INTERRUPT_MASK = 0x1f;
+
+    private int flags = 0x00;
+    private int enabled = 0x00;
+
+    int getFlags() {
+        return flags;
+    }
+
+    void setFlags(int value) {
+        flags = value;
+    }
+
+    void setEnabled(int value) {
+        enabled = value;
+    }
+
+    @Override
+    public void setInterrupt(Interrupt interrupt) {
+        log.debug("Interupt line {} fired", interrupt);
+        flags |= (0x01 << interrupt.ordinal());
+    }
+
+    @Override
+    public boolean checkInterrupt(Interrupt interrupt) {
+        return (flags & (0x01 << interrupt.ordinal())) > 0;
+    }
+
+    @Override
+    public void resetInterrupt(Interrupt interrupt) {
+        log.trace("Interrupt {} reset by CPU", interrupt);
+        flags &= ~(0x01 << interrupt.ordinal());
+    }
+
+    @Override
+    public int checkInterrupts() {
+        return flags;
+    }
+
+    @Override
+    public boolean isInterruptEnabled(Interrupt interrupt) {
+        return (enabled & (0x01 << interrupt.ordinal())) > 0;
+    }
+
+    @Override
+    public boolean isInterruptPending() {
+        return (flags & enabled & INTERRUPT_MASK) != 0;
+    }
+}
@@ -10,4 +10,11 @@ public interface InterruptLine {
     void resetInterrupt(Interrupt interrupt);
 
     int checkInterrupts();
+
+    boolean isInterruptEnabled(Interrupt interrupt);
+
+    /**
+     * Returns true if any interrupt is both requested and enabled.
+     */
+    boolean isInterruptPending();
 }
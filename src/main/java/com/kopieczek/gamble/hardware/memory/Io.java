@@ -5,6 +5,7 @@ import com.kopieczek.gamble.hardware.audio.*;
 import java.awt.*;
 
 public interface Io extends TimerRegisters {
+    LcdRegisters getLcdRegisters();
     boolean isLcdDisplayEnabled();
     int getWindowTileMapStartAddress();
     int getWindowTileMapEndAddress();
@@ -70,6 +70,8 @@ class IoModule extends RamModule implements Io {
             3, Color.BLACK
     );
 
+    private static final int[] shadeArgbs = shadeMap.values().stream().mapToInt(Color::getRGB).toArray();
+
     private static final boolean[][] squareWaveDutyCycles = new boolean[][] {
             new boolean[] {false, false, false, false, false, false, false, true},
             new boolean[] {true, false, false, false, false, false, false, true},
@@ -96,6 +98,7 @@ class IoModule extends RamModule implements Io {
     private final java.util.List<WaveRegisterListener> waveListeners = new ArrayList<>();
     private final java.util.List<NoiseRegisterListener> noiseListeners = new ArrayList<>();
     private boolean areTallSpritesEnabled = false;
+    private final LcdRegisters lcdRegisters = new LcdRegisters(shadeArgbs);
 
     // Used for OAM DMA copy and for setting interrupts
     private Mmu globalMemory;
@@ -125,9 +128,21 @@ class IoModule extends RamModule implements Io {
         addTrigger(NR52_ADDR, this::fireAudioEnableChanged);
         addTrigger(LCD_LY_COMPARE_ADDR, this::updateCoincidenceFlag);
         addTrigger(LCD_CURRENT_LINE_ADDR, this::updateCoincidenceFlag);
-        addTrigger(LCD_CONTROL_ADDR, this::maybeFireSpriteHeightChange);
-        addTrigger(SPRITE_PALETTE_0_ADDR, this::fireSpritePaletteChange);
-        addTrigger(SPRITE_PALETTE_1_ADDR, this::fireSpritePaletteChange);
+        addTrigger(LCD_CONTROL_ADDR, this::updateLcdControl);
+        addTrigger(SCROLL_X_ADDR, () -> lcdRegisters.updateScrollX(readByte(SCROLL_X_ADDR)));
+        addTrigger(SCROLL_Y_ADDR, () -> lcdRegisters.updateScrollY(readByte(SCROLL_Y_ADDR)));
+        addTrigger(WINDOW_X_POSITION_ADDR, () -> lcdRegisters.updateWindowX(readByte(WINDOW_X_POSITION_ADDR)));
+        addTrigger(WINDOW_Y_POSITION_ADDR, () -> lcdRegisters.updateWindowY(readByte(WINDOW_Y_POSITION_ADDR)));
+        addTrigger(BACKGROUND_PALETTE_ADDR,
+                () -> lcdRegisters.updateBackgroundPalette(readByte(BACKGROUND_PALETTE_ADDR)));
+        addTrigger(SPRITE_PALETTE_0_ADDR, () -> {
+            lcdRegisters.updateSpritePalette0(readByte(SPRITE_PALETTE_0_ADDR));
+            fireSpritePaletteChange();
+        });
+        addTrigger(SPRITE_PALETTE_1_ADDR, () -> {
+            lcdRegisters.updateSpritePalette1(readByte(SPRITE_PALETTE_1_ADDR));
+            fireSpritePaletteChange();
+        });
         addTrigger(DMA_TRANSFER_ADDR, this::doDmaTransfer);
         addTrigger(BIOS_DISABLE_ADDR, this::disableBios);
         addTrigger(TIMER_DIV_ADDR, () -> setByteDirect(TIMER_DIV_ADDR, 0x00));
@@ -141,6 +156,11 @@ class IoModule extends RamModule implements Io {
         globalMemory.setBiosEnabled(false);
     }
 
+    @Override
+    public LcdRegisters getLcdRegisters() {
+        return lcdRegisters;
+    }
+
     @Override
     public boolean isLcdDisplayEnabled() {
         return isHigh(LCD_CONTROL_ADDR, 7);
@@ -806,9 +826,11 @@ class IoModule extends RamModule implements Io {
 
     @Override
     public short[] getWaveData() {
+        int[] samplePairs = new int[WAVE_DATA_SIZE_BYTES];
+        readBlock(WAVE_DATA_ADDR, samplePairs, 0, WAVE_DATA_SIZE_BYTES);
         short[] data = new short[WAVE_DATA_SIZE_BYTES * 2];
         for (int idx = 0; idx < WAVE_DATA_SIZE_BYTES; idx++) {
-            int samplePair = readByte(WAVE_DATA_ADDR + idx);
+            int samplePair = samplePairs[idx];
             data[idx * 2] = (short)(samplePair >> 4);
             data[idx * 2 + 1] = (short)(samplePair & 0x0f);
         }
@@ -868,6 +890,11 @@ class IoModule extends RamModule implements Io {
         globalMemory.doDmaTransfer(readByte(DMA_TRANSFER_ADDR));
     }
 
+    private void updateLcdControl() {
+        lcdRegisters.updateControl(readByte(LCD_CONTROL_ADDR));
+        maybeFireSpriteHeightChange();
+    }
+
     private void maybeFireSpriteHeightChange() {
         boolean oldValue = this.areTallSpritesEnabled;
         boolean newValue = getSpriteHeight() == 16;
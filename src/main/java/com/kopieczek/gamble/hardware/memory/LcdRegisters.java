@@ -0,0 +1,165 @@
+package com.kopieczek.gamble.hardware.memory;
+
+/**
+ * Decoded copy of the registers that the GPU reads while drawing (LCDC, SCX/SCY, WX/WY, BGP, OBP0 and OBP1).
+ * IoModule keeps it up to date from write triggers, so reading it never touches memory.
+ */
+public class LcdRegisters {
+    private static final int TRANSPARENT = 0x00ffffff;
+
+    private boolean isLcdDisplayEnabled;
+    private int windowTileMapStartAddress;
+    private boolean isWindowDisplayEnabled;
+    private int tileDataStartAddress;
+    private boolean areTileMapEntriesSigned;
+    private int backgroundTileMapStartAddress;
+    private int spriteHeight;
+    private boolean isSpriteDisplayEnabled;
+    private boolean isBackgroundDisplayEnabled;
+    private int scrollX;
+    private int scrollY;
+    private int windowX;
+    private int windowY;
+    private final int[] shades;
+    private final int[] backgroundShades = new int[4];
+    private final int[] spritePalette0 = new int[4];
+    private final int[] spritePalette1 = new int[4];
+
+    /**
+     * @param shades The ARGB value of each of the four shades of gray that palettes map colors to.
+     */
+    LcdRegisters(int[] shades) {
+        this.shades = shades;
+        spritePalette0[0] = TRANSPARENT;
+        spritePalette1[0] = TRANSPARENT;
+
+        // Start out consistent with all registers being zero.
+        updateControl(0);
+        updateWindowX(0);
+        updateBackgroundPalette(0);
+        updateSpritePalette0(0);
+        updateSpritePalette1(0);
+    }
+
+    void updateControl(int lcdc) {
+        isLcdDisplayEnabled = (lcdc & 0x80) > 0;
+        windowTileMapStartAddress = (lcdc & 0x40) > 0 ? 0x9c00 : 0x9800;
+        isWindowDisplayEnabled = (lcdc & 0x20) > 0;
+        tileDataStartAddress = (lcdc & 0x10) > 0 ? 0x8000 : 0x8800;
+        areTileMapEntriesSigned = (lcdc & 0x10) == 0;
+        backgroundTileMapStartAddress = (lcdc & 0x08) > 0 ? 0x9c00 : 0x9800;
+        spriteHeight = (lcdc & 0x04) > 0 ? 16 : 8;
+        isSpriteDisplayEnabled = (lcdc & 0x02) > 0;
+        isBackgroundDisplayEnabled = (lcdc & 0x01) > 0;
+    }
+
+    void updateScrollX(int value) {
+        scrollX = value;
+    }
+
+    void updateScrollY(int value) {
+        scrollY = value;
+    }
+
+    void updateWindowX(int value) {
+        // WX holds the x position plus 7 pixels
+        windowX = value - 7;
+    }
+
+    void updateWindowY(int value) {
+        windowY = value;
+    }
+
+    void updateBackgroundPalette(int value) {
+        decodePalette(value, backgroundShades, 0);
+    }
+
+    void updateSpritePalette0(int value) {
+        // Color 0 is always transparent for sprites
+        decodePalette(value, spritePalette0, 1);
+    }
+
+    void updateSpritePalette1(int value) {
+        decodePalette(value, spritePalette1, 1);
+    }
+
+    private void decodePalette(int value, int[] palette, int firstColorId) {
+        // Bits 1-0 are color 0; bits 3-2 are color 1; ... ; bits 7-6 are color 3
+        for (int colorId = firstColorId; colorId < 4; colorId++) {
+            palette[colorId] = shades[(value >> (colorId * 2)) & 0x03];
+        }
+    }
+
+    public boolean isLcdDisplayEnabled() {
+        return isLcdDisplayEnabled;
+    }
+
+    public int getWindowTileMapStartAddress() {
+        return windowTileMapStartAddress;
+    }
+
+    public boolean isWindowDisplayEnabled() {
+        return isWindowDisplayEnabled;
+    }
+
+    public int getTileDataStartAddress() {
+        return tileDataStartAddress;
+    }
+
+    public boolean areTileMapEntriesSigned() {
+        return areTileMapEntriesSigned;
+    }
+
+    public int getBackgroundTileMapStartAddress() {
+        return backgroundTileMapStartAddress;
+    }
+
+    public int getSpriteHeight() {
+        return spriteHeight;
+    }
+
+    public boolean isSpriteDisplayEnabled() {
+        return isSpriteDisplayEnabled;
+    }
+
+    public boolean isBackgroundDisplayEnabled() {
+        return isBackgroundDisplayEnabled;
+    }
+
+    public int getScrollX() {
+        return scrollX;
+    }
+
+    public int getScrollY() {
+        return scrollY;
+    }
+
+    public int getWindowX() {
+        return windowX;
+    }
+
+    public int getWindowY() {
+        return windowY;
+    }
+
+    /**
+     * ARGB shade for each background color id. Callers must not modify the array.
+     */
+    public int[] getBackgroundShades() {
+        return backgroundShades;
+    }
+
+    /**
+     * ARGB shade for each color id under sprite palette 0; color 0 is transparent. Callers must not modify the array.
+     */
+    public int[] getSpritePalette0() {
+        return spritePalette0;
+    }
+
+    /**
+     * ARGB shade for each color id under sprite palette 1; color 0 is transparent. Callers must not modify the array.
+     */
+    public int[] getSpritePalette1() {
+        return spritePalette1;
+    }
+}
@@ -3,4 +3,31 @@ package com.kopieczek.gamble.hardware.memory;
 public interface Memory {
     int readByte(int address);
     void setByte(int address, int value);
+
+    /**
+     * Reads <code>length</code> bytes starting at <code>address</code> into <code>dest</code>,
+     * starting at index <code>offset</code>.
+     */
+    default void readBlock(int address, int[] dest, int offset, int length) {
+        for (int idx = 0; idx < length; idx++) {
+            dest[offset + idx] = readByte(address + idx);
+        }
+    }
+
+    /**
+     * Writes <code>length</code> bytes from <code>src</code>, starting at index <code>offset</code>,
+     * to memory starting at <code>address</code>.
+     */
+    default void writeBlock(int address, int[] src, int offset, int length) {
+        for (int idx = 0; idx < length; idx++) {
+            setByte(address + idx, src[offset + idx]);
+        }
+    }
+
+    /**
+     * Reads the little-endian 16-bit word at <code>address</code>.
+     */
+    default int readWord(int address) {
+        return readByte(address) | (readByte(address + 1) << 8);
+    }
 }
@@ -30,6 +30,40 @@ public abstract class MemoryModule implements Memory {
         }
     }
 
+    /**
+     * Writes a block of bytes. Filters and triggers are honoured; if none are registered in the block's range,
+     * the bytes are written in one go via {@link #writeBlockDirect}.
+     */
+    @Override
+    public void writeBlock(int address, int[] src, int offset, int length) {
+        if (hasHooksInRange(address, length)) {
+            for (int idx = 0; idx < length; idx++) {
+                setByte(address + idx, src[offset + idx]);
+            }
+        } else {
+            writeBlockDirect(address, src, offset, length);
+        }
+    }
+
+    protected void writeBlockDirect(int address, int[] src, int offset, int length) {
+        for (int idx = 0; idx < length; idx++) {
+            setByteDirect(address + idx, src[offset + idx]);
+        }
+    }
+
+    private boolean hasHooksInRange(int address, int length) {
+        return hasKeyInRange(filters, address, length) || hasKeyInRange(triggers, address, length);
+    }
+
+    private static boolean hasKeyInRange(Map<Integer, ?> hooks, int address, int length) {
+        for (int hookAddress : hooks.keySet()) {
+            if (hookAddress >= address && hookAddress < address + length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void addFilter(int address, Filter f) {
         filters.put(address, f);
     }
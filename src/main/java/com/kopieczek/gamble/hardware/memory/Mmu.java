@@ -3,13 +3,15 @@ package com.kopieczek.gamble.hardware.memory;
 import com.kopieczek.gamble.hardware.cpu.Interrupt;
 import com.kopieczek.gamble.hardware.memory.cartridge.Cartridge;
 import com.kopieczek.gamble.hardware.memory.cartridge.EmptyCartridge;
+import com.kopieczek.gamble.hardware.scheduler.Clocked;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 
-public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
+public class Mmu implements Memory, InterruptLine, GraphicsAccessController, Clocked {
     private static final Logger log = LogManager.getLogger(Mmu.class);
     public static final int BIOS_START       = 0x0000;
     public static final int BIOS_SIZE        = 0x0100;
@@ -34,6 +36,7 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
     public static final int ZRAM_SIZE        = 0x0080;
 
     private static final int INTERRUPT_FLAG_ADDRESS = 0xff0f;
+    private static final int INTERRUPT_ENABLE_ADDRESS = 0xffff;
 
     private final MemoryModule bios;
     private MemoryModule rom0;
@@ -44,11 +47,15 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
     private final OamModule oam;
     private final IoModule io;
     private final MemoryModule zram;
+    private final InterruptController interrupts = new InterruptController();
 
     private boolean shouldReadBios;
     private boolean isVramAccessible = true;
     private boolean isOamAccessible = true;
     private List<DmaProcess> ongoingDmas = new LinkedList<DmaProcess>();
+    private Memory dmaMemoryAccess = this;
+    private Runnable dmaStartListener = () -> {};
+    private final Runnable[] ioAccessListeners = new Runnable[IO_AREA_SIZE];
 
     Mmu(MemoryModule bios,
                Cartridge cartridge,
@@ -79,16 +86,30 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
         this.io = io;
         this.zram = zram;
         this.io.linkGlobalMemory(this);
+        linkInterruptEnableRegister();
         shouldReadBios = true;
         validateMemoryModuleSizes();
     }
 
+    @Override
     public void stepAhead(int cycles) {
         // MMU clock is only used to correctly time ongoing DMAs.
-        ongoingDmas.forEach(dma -> dma.tick(this, cycles));
+        ongoingDmas.forEach(dma -> dma.tick(dmaMemoryAccess, cycles));
         ongoingDmas.removeIf(DmaProcess::isFinished);
     }
 
+    @Override
+    public int getCyclesUntilNextEvent() {
+        // OAM is off limits to the CPU during DMA, so only the end of each transfer matters.
+        return ongoingDmas.stream().mapToInt(DmaProcess::getCyclesUntilFinished).min().orElse(Integer.MAX_VALUE);
+    }
+
+    private void linkInterruptEnableRegister() {
+        // IE lives in the last byte of high RAM; mirror every write to it into the interrupt controller.
+        final int localAddress = INTERRUPT_ENABLE_ADDRESS - ZRAM_START;
+        zram.addTrigger(localAddress, () -> interrupts.setEnabled(zram.readByte(localAddress)));
+    }
+
     public static Mmu build(boolean skipBios) {
         Cartridge cartridge = new EmptyCartridge();
         RomModule bios = (skipBios) ? new FastBiosModule() : new BiosModule();
@@ -144,6 +165,7 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
         return new Memory() {
             @Override
             public int readByte(int address) {
+                fireIoAccess(address);
                 if (isAccessible(address)) {
                     return Mmu.this.readByte(address);
                 } else {
@@ -155,8 +177,10 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
 
             @Override
             public void setByte(int address, int value) {
+                fireIoAccess(address);
                 if (isAccessible(address)) {
                     Mmu.this.setByte(address, value);
+                    fireIoAccess(address);
                 } else {
                     log.warn("Program tried to write to address {} while it was read only",
                         Integer.toHexString(address));
@@ -178,8 +202,51 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
         };
     }
 
+    /**
+     * Sets the memory view through which OAM DMA transfers read and write. Defaults to the MMU itself.
+     */
+    public void setDmaMemoryAccess(Memory memory) {
+        dmaMemoryAccess = memory;
+    }
+
+    /**
+     * Registers a callback to run whenever the CPU accesses an IO register between <code>firstAddress</code> and
+     * <code>lastAddress</code> inclusive; e.g. to bring the peripheral owning those registers up to date.
+     * The callback runs before every read, and both before and after every write.
+     */
+    public void addIoAccessListener(int firstAddress, int lastAddress, Runnable listener) {
+        if (firstAddress < IO_AREA_START || lastAddress >= ZRAM_START || firstAddress > lastAddress) {
+            throw new IllegalArgumentException("Invalid IO register range 0x" + Integer.toHexString(firstAddress) +
+                    "-0x" + Integer.toHexString(lastAddress));
+        }
+
+        for (int address = firstAddress; address <= lastAddress; address++) {
+            final Runnable existing = ioAccessListeners[address - IO_AREA_START];
+            ioAccessListeners[address - IO_AREA_START] = (existing == null) ? listener : () -> {
+                existing.run();
+                listener.run();
+            };
+        }
+    }
+
+    private void fireIoAccess(int address) {
+        if (address >= IO_AREA_START && address < ZRAM_START) {
+            Runnable listener = ioAccessListeners[address - IO_AREA_START];
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Registers a callback to run whenever a DMA transfer is started, e.g. to reschedule the MMU.
+     */
+    public void setDmaStartListener(Runnable listener) {
+        dmaStartListener = listener;
+    }
+
     public InterruptLine getInterruptLine() {
-        return this;
+        return interrupts;
     }
 
     public GraphicsAccessController getGraphicsAccessController() {
@@ -188,6 +255,10 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
 
     @Override
     public int readByte(int address) {
+        if (address == INTERRUPT_FLAG_ADDRESS) {
+            return interrupts.getFlags();
+        }
+
         MemoryModule module = getModuleForAddress(address);
         int localAddress = getLocalAddress(address, module);
         return module.readByte(localAddress);
@@ -195,11 +266,84 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
 
     @Override
     public void setByte(int address, int value) {
+        if (address == INTERRUPT_FLAG_ADDRESS) {
+            interrupts.setFlags(value);
+            return;
+        }
+
         MemoryModule module = getModuleForAddress(address);
         int localAddress = getLocalAddress(address, module);
         module.setByte(localAddress, value);
     }
 
+    @Override
+    public void readBlock(int address, int[] dest, int offset, int length) {
+        final int end = address + length;
+        while (address < end) {
+            int chunkEnd = Math.min(end, getRegionEnd(address));
+            if (address == INTERRUPT_FLAG_ADDRESS) {
+                dest[offset] = interrupts.getFlags();
+            } else {
+                MemoryModule module = getModuleForAddress(address);
+                module.readBlock(getLocalAddress(address, module), dest, offset, chunkEnd - address);
+            }
+            offset += chunkEnd - address;
+            address = chunkEnd;
+        }
+    }
+
+    @Override
+    public void writeBlock(int address, int[] src, int offset, int length) {
+        final int end = address + length;
+        while (address < end) {
+            int chunkEnd = Math.min(end, getRegionEnd(address));
+            if (address == INTERRUPT_FLAG_ADDRESS) {
+                interrupts.setFlags(src[offset]);
+            } else {
+                MemoryModule module = getModuleForAddress(address);
+                module.writeBlock(getLocalAddress(address, module), src, offset, chunkEnd - address);
+            }
+            offset += chunkEnd - address;
+            address = chunkEnd;
+        }
+    }
+
+    /**
+     * Returns the first address past the contiguous region (as routed by {@link #getModuleForAddress}) that
+     * contains the given address. The interrupt flag register is treated as a region of its own.
+     */
+    private int getRegionEnd(int globalAddress) {
+        if (globalAddress < ROM_1_START) {
+            if (shouldReadBios && globalAddress < BIOS_START + BIOS_SIZE) {
+                return BIOS_START + BIOS_SIZE;
+            } else {
+                return ROM_1_START;
+            }
+        } else if (globalAddress < VRAM_START) {
+            return VRAM_START;
+        } else if (globalAddress < EXT_RAM_START) {
+            return EXT_RAM_START;
+        } else if (globalAddress < RAM_START) {
+            return RAM_START;
+        } else if (globalAddress < SHADOW_RAM_START) {
+            return SHADOW_RAM_START;
+        } else if (globalAddress < OAM_START) {
+            return OAM_START;
+        } else if (globalAddress < DEAD_AREA_START) {
+            return DEAD_AREA_START;
+        } else if (globalAddress < IO_AREA_START) {
+            return IO_AREA_START;
+        } else if (globalAddress < INTERRUPT_FLAG_ADDRESS) {
+            return INTERRUPT_FLAG_ADDRESS;
+        } else if (globalAddress == INTERRUPT_FLAG_ADDRESS) {
+            return INTERRUPT_FLAG_ADDRESS + 1;
+        } else if (globalAddress < ZRAM_START) {
+            return ZRAM_START;
+        } else {
+            return ZRAM_START + ZRAM_SIZE;
+        }
+    }
+
     private static int getLocalAddress(int globalAddress, MemoryModule module) {
         if ((module.getSizeInBytes() & 0xff) != 0 && globalAddress < ZRAM_START) {
             // Hack to handle the weirdly-located sprite area.
@@ -244,30 +388,63 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
 
     @Override
     public void setInterrupt(Interrupt interrupt) {
-        log.debug("Interupt line {} fired", interrupt);
-        final int currentValue = readByte(INTERRUPT_FLAG_ADDRESS);
-        final int bitMask = (0x01 << interrupt.ordinal());
-        setByte(INTERRUPT_FLAG_ADDRESS, currentValue | bitMask);
+        interrupts.setInterrupt(interrupt);
     }
 
     @Override
     public boolean checkInterrupt(Interrupt interrupt) {
-        final int flagValue = readByte(INTERRUPT_FLAG_ADDRESS);
-        final int bitMask = (0x01 << interrupt.ordinal());
-        return (flagValue & bitMask) > 0;
+        return interrupts.checkInterrupt(interrupt);
     }
 
     @Override
     public void resetInterrupt(Interrupt interrupt) {
-        log.trace("Interrupt {} reset by CPU", interrupt);
-        final int currentValue = readByte(INTERRUPT_FLAG_ADDRESS);
-        final int bitMask = ~(0x01 << interrupt.ordinal());
-        setByte(INTERRUPT_FLAG_ADDRESS, currentValue & bitMask);
+        interrupts.resetInterrupt(interrupt);
     }
 
     @Override
     public int checkInterrupts() {
-        return readByte(INTERRUPT_FLAG_ADDRESS);
+        return interrupts.checkInterrupts();
+    }
+
+    @Override
+    public boolean isInterruptEnabled(Interrupt interrupt) {
+        return interrupts.isInterruptEnabled(interrupt);
+    }
+
+    @Override
+    public boolean isInterruptPending() {
+        return interrupts.isInterruptPending();
+    }
+
+    /**
+     * Returns the global page numbers (address / 0x100) of all writable memory written to since the last
+     * call to {@link #clearDirtyPages()}. Banked-out cartridge RAM is tracked by the cartridge itself;
+     * see {@link Cartridge#getDirtyRamPages()}.
+     */
+    public BitSet getDirtyPages() {
+        BitSet dirtyPages = new BitSet(0x100);
+        collectDirtyPages(dirtyPages, vram, VRAM_START);
+        collectDirtyPages(dirtyPages, extRam, EXT_RAM_START);
+        collectDirtyPages(dirtyPages, ram, RAM_START);
+        collectDirtyPages(dirtyPages, oam, OAM_START);
+        collectDirtyPages(dirtyPages, io, IO_AREA_START);
+        collectDirtyPages(dirtyPages, zram, ZRAM_START);
+        return dirtyPages;
+    }
+
+    public void clearDirtyPages() {
+        for (MemoryModule module : new MemoryModule[] {vram, extRam, ram, oam, io, zram}) {
+            if (module instanceof RamModule) {
+                ((RamModule) module).clearDirtyPages();
+            }
+        }
+    }
+
+    private static void collectDirtyPages(BitSet into, MemoryModule module, int startAddress) {
+        if (module instanceof RamModule) {
+            int firstPage = startAddress / RamModule.PAGE_SIZE;
+            ((RamModule) module).getDirtyPages().stream().forEach(page -> into.set(firstPage + page));
+        }
     }
 
     public void loadCartridge(Cartridge cartridge) {
@@ -280,6 +457,7 @@ public class Mmu implements Memory, InterruptLine, GraphicsAccessController {
     void doDmaTransfer(int startIndicator) {
         int startAddress = startIndicator << 8;
         ongoingDmas.add(new DmaProcess(startAddress, OAM_START));
+        dmaStartListener.run();
     }
 
     @Override
@@ -17,10 +17,7 @@ class OamModule extends RamModule implements Oam {
     @Override
     public int[] getAttributeBytes(int spriteIndex) {
         int[] attributes = new int[4];
-        int startAddress = spriteIndex * 4;
-        for (int offset = 0; offset < 4; offset++) {
-            attributes[offset] = readByte(startAddress + offset);
-        }
+        readBlock(spriteIndex * 4, attributes, 0, 4);
         return attributes;
     }
 
@@ -33,6 +30,22 @@ class OamModule extends RamModule implements Oam {
         }
     }
 
+    @Override
+    public void writeBlock(int address, int[] src, int offset, int length) {
+        int[] prevValues = new int[length];
+        readBlock(address, prevValues, 0, length);
+        super.writeBlock(address, src, offset, length);
+
+        int lastFiredIndex = -1;
+        for (int idx = 0; idx < length; idx++) {
+            int spriteIndex = (address + idx) / 4;
+            if (prevValues[idx] != src[offset + idx] && spriteIndex != lastFiredIndex) {
+                fireSpriteAttributesChanged(spriteIndex);
+                lastFiredIndex = spriteIndex;
+            }
+        }
+    }
+
     private void fireSpriteAttributesChanged(int spriteIndex) {
         spriteListeners.forEach(l -> l.onSpriteAttributesModified(spriteIndex));
     }
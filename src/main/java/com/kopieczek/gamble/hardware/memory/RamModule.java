@@ -6,11 +6,16 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
 
 public class RamModule extends MemoryModule {
     public static final int DEFAULT_SIZE = 0xffff;
+    public static final int PAGE_SIZE = 0x100;
     private int[] memory;
 
+    // One bit per PAGE_SIZE bytes, set whenever anything in that page is written.
+    private final long[] dirtyPages;
+
     public RamModule() {
         this(DEFAULT_SIZE);
     }
@@ -18,6 +23,7 @@ public class RamModule extends MemoryModule {
     public RamModule(int size) {
         super(size);
         memory = new int[size];
+        dirtyPages = new long[(size + PAGE_SIZE * 64 - 1) / (PAGE_SIZE * 64)];
     }
 
     @Override
@@ -42,19 +48,112 @@ public class RamModule extends MemoryModule {
         } catch (ArrayIndexOutOfBoundsException e) {
             throw new IllegalArgumentException("Invalid memory address: " + address, e);
         }
+
+        // Page is address / PAGE_SIZE; long shifts implicitly take the page modulo 64.
+        dirtyPages[address >>> 14] |= 1L << (address >>> 8);
+    }
+
+    @Override
+    public void readBlock(int address, int[] dest, int offset, int length) {
+        try {
+            System.arraycopy(memory, address, dest, offset, length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid memory range: " + address + "+" + length, e);
+        }
+    }
+
+    @Override
+    public int readWord(int address) {
+        try {
+            return memory[address] | (memory[address + 1] << 8);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid memory address: " + address, e);
+        }
+    }
+
+    @Override
+    protected void writeBlockDirect(int address, int[] src, int offset, int length) {
+        if (address < 0 || address + length > memory.length) {
+            throw new IllegalArgumentException("Invalid memory range: " + address + "+" + length);
+        }
+
+        for (int idx = 0; idx < length; idx++) {
+            int value = src[offset + idx];
+            if (value < 0 || value > 0xff) {
+                throw new IllegalArgumentException("Cannot write value " + value + "; must fit in one byte");
+            }
+        }
+
+        System.arraycopy(src, offset, memory, address, length);
+        for (int page = address >>> 8; page <= (address + length - 1) >>> 8; page++) {
+            dirtyPages[page >>> 6] |= 1L << page;
+        }
+    }
+
+    /**
+     * Returns the indices of all pages written to since the last call to {@link #clearDirtyPages()}.
+     */
+    public BitSet getDirtyPages() {
+        return BitSet.valueOf(dirtyPages);
+    }
+
+    public boolean isPageDirty(int page) {
+        return (dirtyPages[page >>> 6] & (1L << page)) != 0;
+    }
+
+    public void clearDirtyPages() {
+        Arrays.fill(dirtyPages, 0L);
     }
 
     public byte[] exportData() {
         byte[] output = new byte[memory.length * 4]; // 4 bytes in an int
-        ByteBuffer bb = ByteBuffer.wrap(output).order(ByteOrder.LITTLE_ENDIAN);
-        Arrays.stream(memory).forEach(bb::putInt);
+        ByteBuffer.wrap(output).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(memory);
         return output;
     }
 
+    /**
+     * Copies the whole of RAM to <code>dest</code> at <code>destOffset</code>, one byte per byte.
+     */
+    public void exportBytes(byte[] dest, int destOffset) {
+        for (int address = 0; address < memory.length; address++) {
+            dest[destOffset + address] = (byte) memory[address];
+        }
+    }
+
+    /**
+     * Writes one page in the format of {@link #exportBytes} to <code>dest</code>, at the offset that page
+     * has in the full export plus <code>baseOffset</code>.
+     */
+    public void exportPageBytes(int page, byte[] dest, int baseOffset) {
+        int end = Math.min((page + 1) * PAGE_SIZE, memory.length);
+        for (int address = page * PAGE_SIZE; address < end; address++) {
+            dest[baseOffset + address] = (byte) memory[address];
+        }
+    }
+
+    /**
+     * Loads the whole of RAM from data in the format of {@link #exportBytes}, starting at <code>srcOffset</code>.
+     */
+    public void importBytes(byte[] src, int srcOffset) {
+        Preconditions.checkArgument(src.length - srcOffset >= memory.length);
+        for (int address = 0; address < memory.length; address++) {
+            memory[address] = src[srcOffset + address] & 0xff;
+        }
+        markAllPagesDirty();
+    }
+
     public void importData(byte[] data) {
         Preconditions.checkArgument(data.length == getSizeInBytes() * 4);
         IntBuffer intBuf = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
         memory = new int[intBuf.remaining()];
         intBuf.get(memory);
+        markAllPagesDirty();
+    }
+
+    private void markAllPagesDirty() {
+        int pages = (getSizeInBytes() + PAGE_SIZE - 1) / PAGE_SIZE;
+        for (int page = 0; page < pages; page++) {
+            dirtyPages[page >>> 6] |= 1L << page;
+        }
     }
 }
@@ -17,6 +17,16 @@ public class RomModule extends MemoryModule {
         return data[address];
     }
 
+    @Override
+    public void readBlock(int address, int[] dest, int offset, int length) {
+        System.arraycopy(data, address, dest, offset, length);
+    }
+
+    @Override
+    public int readWord(int address) {
+        return data[address] | (data[address + 1] << 8);
+    }
+
     @Override
     protected void setByteDirect(int address, int value) {
         log.warn("Program attempted to write to ROM in module {} at address {}",
@@ -0,0 +1,5 @@
+package com.kopieczek.gamble.hardware.memory;
+
+public interface TileChangeListener {
+    void onTileModified(int tileIndex);
+}
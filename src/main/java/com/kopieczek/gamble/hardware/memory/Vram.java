@@ -2,7 +2,14 @@ package com.kopieczek.gamble.hardware.memory;
 
 public interface Vram {
     int TOTAL_SPRITE_PATTERNS = 256;
+    int TOTAL_TILES = 384;
 
     void register(SpriteChangeListener listener);
+    void register(TileChangeListener listener);
     int[] getPatternBytes(int patternIndex);
+
+    /**
+     * Returns the 16 bytes of the given tile, where tiles are numbered from the start of VRAM (0x8000).
+     */
+    int[] getTileBytes(int tileIndex);
 }
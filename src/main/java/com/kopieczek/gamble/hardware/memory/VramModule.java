@@ -3,7 +3,9 @@ package com.kopieczek.gamble.hardware.memory;
 import java.util.ArrayList;
 
 public class VramModule extends RamModule implements Vram {
+    private static final int TILE_DATA_SIZE = Vram.TOTAL_TILES * 16;
     private final ArrayList<SpriteChangeListener> spriteListeners = new ArrayList<>();
+    private final ArrayList<TileChangeListener> tileListeners = new ArrayList<>();
 
     VramModule() {
         super(Mmu.VRAM_SIZE);
@@ -14,30 +16,60 @@ public class VramModule extends RamModule implements Vram {
         spriteListeners.add(listener);
     }
 
+    @Override
+    public void register(TileChangeListener listener) {
+        tileListeners.add(listener);
+    }
+
     @Override
     public int[] getPatternBytes(int patternIndex) {
         if (patternIndex > 255) {
             throw new IllegalArgumentException("Pattern index " + patternIndex + " out of range (max 255)");
         }
 
-        int[] pattern = new int[16];
-        int startAddress = patternIndex * 16;
-        for (int offset = 0; offset < 16; offset++) {
-            pattern[offset] = readByte(startAddress + offset);
+        return getTileBytes(patternIndex);
+    }
+
+    @Override
+    public int[] getTileBytes(int tileIndex) {
+        if (tileIndex >= TOTAL_TILES) {
+            throw new IllegalArgumentException("Tile index " + tileIndex + " out of range (max " + (TOTAL_TILES - 1) + ")");
         }
-        return pattern;
+
+        int[] tile = new int[16];
+        readBlock(tileIndex * 16, tile, 0, 16);
+        return tile;
     }
 
     @Override
     public void setByte(int address, int value) {
         int prevValue = readByte(address);
         super.setByte(address, value);
-        if (prevValue != value && address < 0x1000) {
-            fireSpritePatternChanged(address / 16);
+        if (prevValue != value && address < TILE_DATA_SIZE) {
+            fireTileChanged(address / 16);
         }
     }
 
-    private void fireSpritePatternChanged(int patternIndex) {
-        spriteListeners.forEach(l -> l.onSpritePatternModified(patternIndex));
+    @Override
+    public void writeBlock(int address, int[] src, int offset, int length) {
+        int[] prevValues = new int[length];
+        readBlock(address, prevValues, 0, length);
+        super.writeBlock(address, src, offset, length);
+
+        int lastFiredIndex = -1;
+        for (int idx = 0; idx < length && address + idx < TILE_DATA_SIZE; idx++) {
+            int tileIndex = (address + idx) / 16;
+            if (prevValues[idx] != src[offset + idx] && tileIndex != lastFiredIndex) {
+                fireTileChanged(tileIndex);
+                lastFiredIndex = tileIndex;
+            }
+        }
+    }
+
+    private void fireTileChanged(int tileIndex) {
+        tileListeners.forEach(l -> l.onTileModified(tileIndex));
+        if (tileIndex < TOTAL_SPRITE_PATTERNS) {
+            spriteListeners.forEach(l -> l.onSpritePatternModified(tileIndex));
+        }
     }
 }
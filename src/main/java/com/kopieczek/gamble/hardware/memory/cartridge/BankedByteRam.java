@@ -0,0 +1,126 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.google.common.base.Preconditions;
+import com.kopieczek.gamble.hardware.memory.MemoryModule;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import com.kopieczek.gamble.hardware.memory.RamModule;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Cartridge RAM held one byte per byte, and exposed to the MMU as a bank-sized window that MBCs move by offset.
+ *
+ * Reads while the RAM is disabled (or when the cartridge has none) yield 0xff, and writes are dropped.
+ * Chips smaller than a bank are mirrored across it. Dirty pages are numbered across the whole chip, so that
+ * page <code>n</code> of bank <code>b</code> is <code>b * 32 + n</code>.
+ */
+class BankedByteRam extends MemoryModule {
+    private final byte[] data;
+    private final long[] dirtyPages;
+    private final int windowSize;
+    private final int numBanks;
+    private boolean isEnabled = false;
+    private int offset = 0;
+
+    BankedByteRam(int sizeInBytes) {
+        super(Mmu.EXT_RAM_SIZE);
+        data = new byte[sizeInBytes];
+        dirtyPages = new long[(sizeInBytes / RamModule.PAGE_SIZE + 63) / 64];
+        windowSize = Math.min(sizeInBytes, Mmu.EXT_RAM_SIZE);
+        numBanks = (sizeInBytes + Mmu.EXT_RAM_SIZE - 1) / Mmu.EXT_RAM_SIZE;
+    }
+
+    void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Selects a bank, wrapping around if the chip has fewer banks than the MBC can address.
+     */
+    void setBank(int bank) {
+        offset = (numBanks == 0) ? 0 : (bank % numBanks) * Mmu.EXT_RAM_SIZE;
+    }
+
+    @Override
+    public int readByte(int address) {
+        if (!isAccessible()) {
+            return 0xff;
+        }
+        return data[toIndex(address)] & 0xff;
+    }
+
+    @Override
+    public void readBlock(int address, int[] dest, int destOffset, int length) {
+        if (!isAccessible()) {
+            Arrays.fill(dest, destOffset, destOffset + length, 0xff);
+            return;
+        }
+
+        for (int idx = 0; idx < length; idx++) {
+            dest[destOffset + idx] = data[toIndex(address + idx)] & 0xff;
+        }
+    }
+
+    @Override
+    protected void setByteDirect(int address, int value) {
+        Preconditions.checkArgument(value >= 0 && value <= 0xff, "Cannot write value %s; must fit in one byte", value);
+        if (isAccessible()) {
+            int index = toIndex(address);
+            data[index] = (byte) value;
+            markDirty(index);
+        }
+    }
+
+    @Override
+    protected void writeBlockDirect(int address, int[] src, int srcOffset, int length) {
+        for (int idx = 0; idx < length; idx++) {
+            setByteDirect(address + idx, src[srcOffset + idx]);
+        }
+    }
+
+    BitSet getDirtyPages() {
+        return BitSet.valueOf(dirtyPages);
+    }
+
+    void clearDirtyPages() {
+        Arrays.fill(dirtyPages, 0L);
+    }
+
+    byte[] exportData() {
+        return Arrays.copyOf(data, data.length);
+    }
+
+    void exportPages(BitSet pages, byte[] image) {
+        pages.stream().forEach(page -> {
+            int start = page * RamModule.PAGE_SIZE;
+            System.arraycopy(data, start, image, start, Math.min(RamModule.PAGE_SIZE, data.length - start));
+        });
+    }
+
+    void importData(byte[] newData) {
+        Preconditions.checkArgument(newData.length == data.length,
+                "Expected %s bytes of RAM data but got %s", data.length, newData.length);
+        System.arraycopy(newData, 0, data, 0, data.length);
+        for (int index = 0; index < data.length; index += RamModule.PAGE_SIZE) {
+            markDirty(index);
+        }
+    }
+
+    private boolean isAccessible() {
+        return isEnabled && data.length > 0;
+    }
+
+    private int toIndex(int address) {
+        return offset + address % windowSize;
+    }
+
+    private void markDirty(int index) {
+        int page = index / RamModule.PAGE_SIZE;
+        dirtyPages[page >>> 6] |= 1L << page;
+    }
+}
@@ -2,10 +2,28 @@ package com.kopieczek.gamble.hardware.memory.cartridge;
 
 import com.kopieczek.gamble.hardware.memory.MemoryModule;
 
+import java.util.BitSet;
+
 public interface Cartridge {
     MemoryModule getRom0();
     MemoryModule getRom1();
     MemoryModule getRam();
     byte[] exportRamData();
     void importRamData(byte[] data);
+
+    /**
+     * Returns the RAM pages written to since the last call to {@link #clearDirtyRamPages()}, numbered
+     * consecutively across all RAM banks (so bank n's first page is n * EXT_RAM_SIZE / PAGE_SIZE).
+     */
+    BitSet getDirtyRamPages();
+    void clearDirtyRamPages();
+
+    /**
+     * Brings <code>image</code>, a previous result of {@link #exportRamData()}, up to date for at least the given
+     * pages. Cartridges that can export page by page override this to avoid exporting all of RAM.
+     */
+    default void updateExportedRamPages(BitSet pages, byte[] image) {
+        byte[] latest = exportRamData();
+        System.arraycopy(latest, 0, image, 0, latest.length);
+    }
 }
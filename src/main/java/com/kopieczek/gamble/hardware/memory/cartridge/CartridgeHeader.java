@@ -0,0 +1,107 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+/**
+ * View of the cartridge header at 0x0100-0x014f. Fields are read out of the ROM image only when asked for.
+ */
+public class CartridgeHeader {
+    private static final int TITLE_ADDR = 0x0134;
+    private static final int TITLE_LENGTH = 16;
+    static final int MBC_TYPE_ADDR = 0x0147;
+    private static final int ROM_SIZE_ADDR = 0x0148;
+    private static final int RAM_SIZE_ADDR = 0x0149;
+    private static final int CHECKSUMMED_HEADER_START = 0x0134;
+    private static final int HEADER_CHECKSUM_ADDR = 0x014d;
+    private static final int BYTES_IN_KB = 1024;
+
+    private final RomImage rom;
+    private final int base;
+
+    CartridgeHeader(RomImage rom) {
+        this(rom, 0);
+    }
+
+    /**
+     * Reads the header of the 32KB image starting at <code>base</code>, e.g. the menu of a multi-game cartridge.
+     */
+    CartridgeHeader(RomImage rom, int base) {
+        this.rom = rom;
+        this.base = base;
+    }
+
+    public String getTitle() {
+        StringBuilder title = new StringBuilder();
+        for (int addr = TITLE_ADDR; addr < TITLE_ADDR + TITLE_LENGTH; addr++) {
+            int c = rom.readByte(base + addr);
+            if (c == 0x00) {
+                break;
+            }
+            title.append((char) c);
+        }
+        return title.toString();
+    }
+
+    public int getCartridgeType() {
+        return rom.readByte(base + MBC_TYPE_ADDR);
+    }
+
+    /**
+     * Whether the cartridge type includes a battery, i.e. whether its RAM (and clock, if any) outlives power-off.
+     */
+    public boolean hasBattery() {
+        switch (getCartridgeType()) {
+            case 0x03: // MBC1 + RAM + battery
+            case 0x06: // MBC2 + battery
+            case 0x09: // ROM + RAM + battery
+            case 0x0d: // MMM01 + RAM + battery
+            case 0x0f: // MBC3 + timer + battery
+            case 0x10: // MBC3 + timer + RAM + battery
+            case 0x13: // MBC3 + RAM + battery
+            case 0x1b: // MBC5 + RAM + battery
+            case 0x1e: // MBC5 + rumble + RAM + battery
+            case 0x22: // MBC7 + RAM + battery
+            case 0xff: // HuC1 + RAM + battery
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public int getRomSizeInBytes() {
+        int code = rom.readByte(base + ROM_SIZE_ADDR);
+        switch (code) {
+            case 0x52: return 72 * 16 * BYTES_IN_KB;
+            case 0x53: return 80 * 16 * BYTES_IN_KB;
+            case 0x54: return 96 * 16 * BYTES_IN_KB;
+            default:
+                if (code > 0x08) {
+                    throw new IllegalArgumentException("Unknown ROM size code 0x" + Integer.toHexString(code));
+                }
+                return (32 * BYTES_IN_KB) << code;
+        }
+    }
+
+    public int getRamSizeInBytes() {
+        int code = rom.readByte(base + RAM_SIZE_ADDR);
+        switch (code) {
+            case 0x00: return 0;
+            case 0x01: return 2 * BYTES_IN_KB;
+            case 0x02: return 8 * BYTES_IN_KB;
+            case 0x03: return 32 * BYTES_IN_KB;
+            case 0x04: return 128 * BYTES_IN_KB;
+            case 0x05: return 64 * BYTES_IN_KB;
+            default:
+                throw new IllegalArgumentException("Unknown RAM size code 0x" + Integer.toHexString(code));
+        }
+    }
+
+    /**
+     * Whether the header checksum at 0x014d matches the bytes 0x0134-0x014c it covers.
+     */
+    public boolean isChecksumValid() {
+        int checksum = 0;
+        for (int addr = CHECKSUMMED_HEADER_START; addr < HEADER_CHECKSUM_ADDR; addr++) {
+            checksum = checksum - rom.readByte(base + addr) - 1;
+        }
+        return (checksum & 0xff) == rom.readByte(base + HEADER_CHECKSUM_ADDR);
+    }
+}
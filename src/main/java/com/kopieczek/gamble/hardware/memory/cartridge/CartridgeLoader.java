@@ -5,24 +5,30 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 
 public class CartridgeLoader {
     private static final Logger log = LogManager.getLogger(CartridgeLoader.class);
-    private static final int MBC_TYPE_ADDR = 0x0147;
 
     public static Cartridge loadFrom(File f) throws IOException {
         log.info("Loading ROM from {}", f);
-        return loadFrom(Files.readAllBytes(f.toPath()));
+        return loadFrom(RomImage.load(f));
     }
 
     public static Cartridge loadFrom(byte[] data) {
-        return loadFrom(mapToUnsigned(data));
+        return loadFrom(RomImage.wrap(data));
     }
 
     public static Cartridge loadFrom(int[] data) {
-        log.debug("Loading ROM from array of size {}", data.length);
-        int cartridgeType = data[MBC_TYPE_ADDR];
+        return loadFrom(RomImage.fromUnsigned(data));
+    }
+
+    public static Cartridge loadFrom(RomImage data) {
+        log.debug("Loading ROM from image of size {}", data.size());
+        if (Mmm01Cartridge.isMmm01(data)) {
+            return new Mmm01Cartridge(data);
+        }
+
+        int cartridgeType = data.getHeader().getCartridgeType();
         switch (cartridgeType) {
             case 0: // ROM only
                 return new MbcType0Cartridge(data);
@@ -33,7 +39,7 @@ public class CartridgeLoader {
             // ------- Type 4 does not exist
             case 5: // MBC type 2
             case 6: // + RAM and battery
-                unsupportedCartridge("MBC type 2");
+                return new MbcType2Cartridge(data);
             // ------- Type 7 does not exist
             case 8: // ROM + RAM
             case 9: // + battery
@@ -42,7 +48,7 @@ public class CartridgeLoader {
             case 11: // MMM01
             case 12: // + RAM
             case 13: // + RAM and battery
-                unsupportedCartridge("MM01");
+                return new Mmm01Cartridge(data);
             // ------- Type 14 does not exist
             case 15: // MBC type 3 + timer + battery
             case 16: // MBC type 3 + RAM + timer + battery
@@ -57,7 +63,7 @@ public class CartridgeLoader {
             case 28: // + rumble
             case 29: // + RAM + rumble
             case 30: // + RAM + battery + rumble
-                unsupportedCartridge("MBC type 5");
+                return new MbcType5Cartridge(data);
             // ------- Type 31 does not exist
             case 32: // MBC type 6 + RAM + battery
                 unsupportedCartridge("MBC type 6");
@@ -80,6 +86,15 @@ public class CartridgeLoader {
         return null;
     }
 
+    /**
+     * Whether the cartridge that would be loaded from the image has battery-backed RAM, going by the header that
+     * identifies it (the menu's, for MMM01 carts).
+     */
+    public static boolean hasBattery(RomImage data) {
+        CartridgeHeader header = Mmm01Cartridge.isMmm01(data) ? Mmm01Cartridge.getMenuHeader(data) : data.getHeader();
+        return header.hasBattery();
+    }
+
     private static void invalidCartridgeType(int cartridgeType) {
         throw new IllegalArgumentException("Cartridge uses invalid cartridge type " + cartridgeType + ", which does not exist");
     }
@@ -89,18 +104,6 @@ public class CartridgeLoader {
     }
 
     public static int getMbcTypeAddr() {
-        return MBC_TYPE_ADDR;
-    }
-
-    private static int[] mapToUnsigned(byte[] data) {
-        int[] unsigned = new int[data.length];
-        for (int ptr = 0; ptr < data.length; ptr++) {
-            // Java bytes are signed; we want to use unsigned bytes
-            // for the cartridge data so have to mask out the sign bit
-            // and uplift to int.
-            unsigned[ptr] = 0xff & data[ptr];
-        }
-
-        return unsigned;
+        return CartridgeHeader.MBC_TYPE_ADDR;
     }
 }
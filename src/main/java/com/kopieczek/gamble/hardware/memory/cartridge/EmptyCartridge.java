@@ -3,6 +3,8 @@ package com.kopieczek.gamble.hardware.memory.cartridge;
 import com.kopieczek.gamble.hardware.memory.MemoryModule;
 import com.kopieczek.gamble.hardware.memory.Mmu;
 
+import java.util.BitSet;
+
 public class EmptyCartridge implements Cartridge {
     private final MemoryModule rom0 = new VoidMemory(Mmu.ROM_0_SIZE);
     private final MemoryModule rom1 = new VoidMemory(Mmu.ROM_1_SIZE);
@@ -33,6 +35,16 @@ public class EmptyCartridge implements Cartridge {
         throw new IllegalStateException("Not yet implemented");
     }
 
+    @Override
+    public BitSet getDirtyRamPages() {
+        return new BitSet();
+    }
+
+    @Override
+    public void clearDirtyRamPages() {
+        // Nothing to track
+    }
+
     private static class VoidMemory extends MemoryModule {
         VoidMemory(int size) {
             super(size);
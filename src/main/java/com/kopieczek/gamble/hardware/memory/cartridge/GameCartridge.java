@@ -1,23 +1,31 @@
 package com.kopieczek.gamble.hardware.memory.cartridge;
 
+import com.google.common.base.Preconditions;
 import com.kopieczek.gamble.hardware.memory.MemoryModule;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import com.kopieczek.gamble.hardware.memory.RamModule;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 
 abstract class GameCartridge implements Cartridge {
+    private static final int LEGACY_BYTES_PER_RAM_BYTE = 4;
     private final MemoryModule rom0;
     private final MemoryModule rom1;
     private final MemoryModule ram;
 
-    protected GameCartridge(int[] data) {
-        rom0 = buildRom0(data);
-        rom1 = buildRom1(data);
-        ram = buildRam(data);
+    protected GameCartridge(RomImage rom) {
+        rom0 = buildRom0(rom);
+        rom1 = buildRom1(rom);
+        ram = buildRam(rom);
     }
 
-    protected abstract MemoryModule buildRom0(final int[] data);
+    protected abstract MemoryModule buildRom0(final RomImage rom);
 
-    protected abstract MemoryModule buildRom1(final int[] data);
+    protected abstract MemoryModule buildRom1(final RomImage rom);
 
-    protected abstract MemoryModule buildRam(final int[] data);
+    protected abstract MemoryModule buildRam(final RomImage rom);
 
     @Override
     public final MemoryModule getRom0() {
@@ -33,4 +41,68 @@ abstract class GameCartridge implements Cartridge {
     public final MemoryModule getRam() {
         return ram;
     }
+
+    protected static BitSet collectDirtyPages(List<RamModule> ramBanks) {
+        final int pagesPerBank = Mmu.EXT_RAM_SIZE / RamModule.PAGE_SIZE;
+        BitSet dirtyPages = new BitSet(ramBanks.size() * pagesPerBank);
+        for (int bankIdx = 0; bankIdx < ramBanks.size(); bankIdx++) {
+            final int firstPage = bankIdx * pagesPerBank;
+            ramBanks.get(bankIdx).getDirtyPages().stream().forEach(page -> dirtyPages.set(firstPage + page));
+        }
+        return dirtyPages;
+    }
+
+    protected static void clearDirtyPages(List<RamModule> ramBanks) {
+        ramBanks.forEach(RamModule::clearDirtyPages);
+    }
+
+    /**
+     * Exports RAM banks back to back, one byte per RAM byte.
+     */
+    protected static byte[] exportRamBanks(List<RamModule> ramBanks) {
+        byte[] output = new byte[Mmu.EXT_RAM_SIZE * ramBanks.size()];
+        for (int bankIdx = 0; bankIdx < ramBanks.size(); bankIdx++) {
+            ramBanks.get(bankIdx).exportBytes(output, bankIdx * Mmu.EXT_RAM_SIZE);
+        }
+        return output;
+    }
+
+    /**
+     * Imports RAM banks exported by {@link #exportRamBanks}, or by older versions which stored each RAM byte as a
+     * little-endian int.
+     */
+    protected static void importRamBanks(List<RamModule> ramBanks, byte[] data) {
+        if (data.length == getLegacyExportSize(ramBanks)) {
+            final int bankExportSize = Mmu.EXT_RAM_SIZE * LEGACY_BYTES_PER_RAM_BYTE;
+            for (int bankIdx = 0; bankIdx < ramBanks.size(); bankIdx++) {
+                int start = bankExportSize * bankIdx;
+                ramBanks.get(bankIdx).importData(Arrays.copyOfRange(data, start, start + bankExportSize));
+            }
+            return;
+        }
+
+        Preconditions.checkArgument(data.length == Mmu.EXT_RAM_SIZE * ramBanks.size(),
+                "Expected %s bytes of RAM data but got %s", Mmu.EXT_RAM_SIZE * ramBanks.size(), data.length);
+        for (int bankIdx = 0; bankIdx < ramBanks.size(); bankIdx++) {
+            ramBanks.get(bankIdx).importBytes(data, bankIdx * Mmu.EXT_RAM_SIZE);
+        }
+    }
+
+    /**
+     * The size of RAM banks as exported by older versions, which {@link #importRamBanks} still accepts.
+     */
+    protected static int getLegacyExportSize(List<RamModule> ramBanks) {
+        return Mmu.EXT_RAM_SIZE * LEGACY_BYTES_PER_RAM_BYTE * ramBanks.size();
+    }
+
+    /**
+     * Updates the given pages (numbered as by {@link #collectDirtyPages}) of an image made by {@link #exportRamBanks}.
+     */
+    protected static void exportRamPages(List<RamModule> ramBanks, BitSet pages, byte[] image) {
+        final int pagesPerBank = Mmu.EXT_RAM_SIZE / RamModule.PAGE_SIZE;
+        pages.stream().forEach(page -> {
+            int bankIdx = page / pagesPerBank;
+            ramBanks.get(bankIdx).exportPageBytes(page % pagesPerBank, image, bankIdx * Mmu.EXT_RAM_SIZE);
+        });
+    }
 }
@@ -3,30 +3,39 @@ package com.kopieczek.gamble.hardware.memory.cartridge;
 import com.kopieczek.gamble.hardware.memory.MemoryModule;
 import com.kopieczek.gamble.hardware.memory.Mmu;
 import com.kopieczek.gamble.hardware.memory.RamModule;
-import com.kopieczek.gamble.hardware.memory.RomModule;
 
-import java.util.Arrays;
+import java.util.BitSet;
 
 class MbcType0Cartridge extends GameCartridge {
-    MbcType0Cartridge(int[] data) {
-        super(data);
+    MbcType0Cartridge(RomImage rom) {
+        super(rom);
     }
 
     @Override
-    protected MemoryModule buildRom0(int[] data) {
-        return new RomModule(Arrays.copyOfRange(data, Mmu.ROM_0_START, Mmu.ROM_0_START + Mmu.ROM_0_SIZE));
+    protected MemoryModule buildRom0(RomImage rom) {
+        return new RomBank(rom, 0);
     }
 
     @Override
-    protected MemoryModule buildRom1(int[] data) {
-        return new RomModule(Arrays.copyOfRange(data, Mmu.ROM_1_START, Mmu.ROM_1_START + Mmu.ROM_1_SIZE));
+    protected MemoryModule buildRom1(RomImage rom) {
+        return new RomBank(rom, 1);
     }
 
     @Override
-    protected MemoryModule buildRam(int[] data) {
+    protected MemoryModule buildRam(RomImage rom) {
         return new RamModule(Mmu.EXT_RAM_SIZE);
     }
 
+    @Override
+    public BitSet getDirtyRamPages() {
+        return new BitSet(); // No RAM to persist
+    }
+
+    @Override
+    public void clearDirtyRamPages() {
+        // Nothing to track
+    }
+
     @Override
     public byte[] exportRamData() {
         return new byte[0]; // No RAM to export
@@ -3,59 +3,37 @@ package com.kopieczek.gamble.hardware.memory.cartridge;
 import com.kopieczek.gamble.hardware.memory.MemoryModule;
 import com.kopieczek.gamble.hardware.memory.Mmu;
 import com.kopieczek.gamble.hardware.memory.RamModule;
-import com.kopieczek.gamble.hardware.memory.RomModule;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Arrays;
+import java.util.BitSet;
 
 class MbcType1Cartridge extends GameCartridge {
     private static final Logger log = LogManager.getLogger(MbcType1Cartridge.class);
-    private final MemoryModule[] romBanks = new MemoryModule[125];
-    private final MemoryModule[] ramBanks = new RamModule[4];
+    private RomBank romBank;
+    private final RamModule[] ramBanks = new RamModule[4];
     private int ramBankRegister = 0;
     private int romBankRegister = 1; // Don't set this directly; use setRomBankRegister.
 
     private boolean isRamEnabled = false;
     private BankingMode bankingMode = BankingMode.HIGH_ROM;
 
-    MbcType1Cartridge(int[] data) {
-        super(data);
-        initRomBanks(data);
-        initRamBanks(data);
+    MbcType1Cartridge(RomImage rom) {
+        super(rom);
+        initRamBanks();
     }
 
-    private void initRomBanks(int[] data) {
-        for (int bankId = 0; bankId < romBanks.length; bankId++) {
-            // This calculation relies on the fact that ROM_0_SIZE == ROM_1_SIZE.
-            int start = Mmu.ROM_0_START + (Mmu.ROM_0_SIZE * bankId);
-            int end = start + Mmu.ROM_0_SIZE;
-            try {
-                log.debug("Init ROM bank {} between {} and {}", bankId,
-                    Integer.toHexString(start), Integer.toHexString(end));
-                romBanks[bankId] = new RomModule(Arrays.copyOfRange(data, start, end));
-            } catch (ArrayIndexOutOfBoundsException e) {
-                log.debug("Creating empty rom for bank {}", bankId);
-                romBanks[bankId] = new RomModule(new int[Mmu.ROM_1_SIZE]);
-            }
-        }
-    }
-
-    private void initRamBanks(int[] data) {
+    private void initRamBanks() {
         for (int bankId = 0; bankId < ramBanks.length; bankId++) {
             ramBanks[bankId] = new RamModule(Mmu.EXT_RAM_SIZE);
         }
     }
 
     @Override
-    protected MemoryModule buildRom0(int[] data) {
+    protected MemoryModule buildRom0(RomImage rom) {
         // Rom 0 is fixed at bank 0, and cannot be modified.
-        return new MemoryModule(Mmu.ROM_0_SIZE) {
-            @Override
-            public int readByte(int address) {
-                return romBanks[0].readByte(address);
-            }
-
+        return new RomBank(rom, 0) {
             @Override
             protected void setByteDirect(int address, int value) {
                 if (address < 0x2000) {
@@ -68,13 +46,8 @@ class MbcType1Cartridge extends GameCartridge {
     }
 
     @Override
-    protected MemoryModule buildRom1(int[] data) {
-        return new MemoryModule(Mmu.ROM_1_SIZE) {
-            @Override
-            public int readByte(int address) {
-                return getRomBank().readByte(address);
-            }
-
+    protected MemoryModule buildRom1(RomImage rom) {
+        romBank = new RomBank(rom, 1) {
             @Override
             protected void setByteDirect(int address, int value) {
                 // 'Writes' to ROM allow the game code to modify the state of the MBC.
@@ -87,13 +60,15 @@ class MbcType1Cartridge extends GameCartridge {
                     }
                 } else {
                     bankingMode = ((value & 0x01) == 0) ? BankingMode.HIGH_ROM : BankingMode.RAM;
+                    updateRomBank();
                 }
             }
         };
+        return romBank;
     }
 
     @Override
-    protected MemoryModule buildRam(int[] data) {
+    protected MemoryModule buildRam(RomImage rom) {
         return new MemoryModule(Mmu.EXT_RAM_SIZE) {
             @Override
             public int readByte(int address) {
@@ -105,6 +80,16 @@ class MbcType1Cartridge extends GameCartridge {
                 }
             }
 
+            @Override
+            public void readBlock(int address, int[] dest, int offset, int length) {
+                if (isRamEnabled) {
+                    getRamBank().readBlock(address, dest, offset, length);
+                } else {
+                    log.warn("Program tried to read from extram while it was disabled");
+                    Arrays.fill(dest, offset, offset + length, 0xff);
+                }
+            }
+
             @Override
             protected void setByteDirect(int address, int value) {
                 if (isRamEnabled) {
@@ -113,14 +98,23 @@ class MbcType1Cartridge extends GameCartridge {
                     log.warn("Program tried to write to extram while it was disabled");
                 }
             }
+
+            @Override
+            protected void writeBlockDirect(int address, int[] src, int offset, int length) {
+                if (isRamEnabled) {
+                    getRamBank().writeBlock(address, src, offset, length);
+                } else {
+                    log.warn("Program tried to write to extram while it was disabled");
+                }
+            }
         };
     }
 
-    private MemoryModule getRomBank() {
+    private void updateRomBank() {
         if (bankingMode == BankingMode.HIGH_ROM) {
-            return romBanks[romBankRegister & 0x7f];
+            romBank.setBank(romBankRegister & 0x7f);
         } else {
-            return romBanks[romBankRegister & 0x1f];
+            romBank.setBank(romBankRegister & 0x1f);
         }
     }
 
@@ -144,16 +138,32 @@ class MbcType1Cartridge extends GameCartridge {
         }
 
         romBankRegister = bankId;
+        updateRomBank();
+    }
+
+    @Override
+    public BitSet getDirtyRamPages() {
+        return collectDirtyPages(Arrays.asList(ramBanks));
+    }
+
+    @Override
+    public void clearDirtyRamPages() {
+        clearDirtyPages(Arrays.asList(ramBanks));
     }
 
     @Override
     public byte[] exportRamData() {
-        throw new IllegalStateException("Not yet implemented");
+        return exportRamBanks(Arrays.asList(ramBanks));
     }
 
     @Override
     public void importRamData(byte[] data) {
-        throw new IllegalStateException("Not yet implemented");
+        importRamBanks(Arrays.asList(ramBanks), data);
+    }
+
+    @Override
+    public void updateExportedRamPages(BitSet pages, byte[] image) {
+        exportRamPages(Arrays.asList(ramBanks), pages, image);
     }
 
     private enum BankingMode {
@@ -0,0 +1,114 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.google.common.base.Preconditions;
+import com.kopieczek.gamble.hardware.memory.MemoryModule;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import com.kopieczek.gamble.hardware.memory.RamModule;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * MBC2: up to 16 ROM banks, and 512 half-bytes of RAM built into the MBC itself.
+ *
+ * Both registers live in 0x0000-0x3fff; bit 8 of the address picks between RAM enable (clear) and ROM bank (set).
+ * The RAM is stored two nibbles to a byte. It is mirrored across the whole external RAM area, and its upper four
+ * bits read as ones.
+ */
+class MbcType2Cartridge extends GameCartridge {
+    private static final int RAM_SIZE_IN_NIBBLES = 512;
+
+    private RomBank romBank;
+    private NibbleRam ram;
+    private int numRomBanks;
+
+    MbcType2Cartridge(RomImage rom) {
+        super(rom);
+    }
+
+    @Override
+    protected MemoryModule buildRom0(RomImage rom) {
+        numRomBanks = Math.max(1, rom.size() / Mmu.ROM_1_SIZE);
+        return new RomBank(rom, 0) {
+            @Override
+            protected void setByteDirect(int address, int value) {
+                if ((address & 0x0100) == 0) {
+                    ram.isEnabled = ((value & 0x0f) == 0x0a);
+                } else {
+                    int bank = value & 0x0f;
+                    bank = (bank == 0x00) ? 0x01 : bank; // Requests for bank 0 must yield bank 1
+                    romBank.setBank(bank % numRomBanks);
+                }
+            }
+        };
+    }
+
+    @Override
+    protected MemoryModule buildRom1(RomImage rom) {
+        romBank = new RomBank(rom, 1);
+        return romBank;
+    }
+
+    @Override
+    protected MemoryModule buildRam(RomImage rom) {
+        ram = new NibbleRam();
+        return ram;
+    }
+
+    @Override
+    public BitSet getDirtyRamPages() {
+        return BitSet.valueOf(new long[] {ram.dirtyPages});
+    }
+
+    @Override
+    public void clearDirtyRamPages() {
+        ram.dirtyPages = 0L;
+    }
+
+    @Override
+    public byte[] exportRamData() {
+        return Arrays.copyOf(ram.data, ram.data.length);
+    }
+
+    @Override
+    public void importRamData(byte[] data) {
+        Preconditions.checkArgument(data.length == ram.data.length,
+                "Expected %s bytes of RAM data but got %s", ram.data.length, data.length);
+        System.arraycopy(data, 0, ram.data, 0, data.length);
+        ram.dirtyPages = (1L << (RAM_SIZE_IN_NIBBLES / RamModule.PAGE_SIZE)) - 1;
+    }
+
+    private static class NibbleRam extends MemoryModule {
+        private final byte[] data = new byte[RAM_SIZE_IN_NIBBLES / 2];
+        private long dirtyPages = 0L;
+        private boolean isEnabled = false;
+
+        private NibbleRam() {
+            super(Mmu.EXT_RAM_SIZE);
+        }
+
+        @Override
+        public int readByte(int address) {
+            if (!isEnabled) {
+                return 0xff;
+            }
+
+            int index = address % RAM_SIZE_IN_NIBBLES;
+            int shift = (index & 0x01) * 4;
+            return 0xf0 | ((data[index >> 1] >> shift) & 0x0f);
+        }
+
+        @Override
+        protected void setByteDirect(int address, int value) {
+            if (!isEnabled) {
+                return;
+            }
+
+            int index = address % RAM_SIZE_IN_NIBBLES;
+            int shift = (index & 0x01) * 4;
+            int packed = data[index >> 1] & ~(0x0f << shift);
+            data[index >> 1] = (byte) (packed | ((value & 0x0f) << shift));
+            dirtyPages |= 1L << (index / RamModule.PAGE_SIZE);
+        }
+    }
+}
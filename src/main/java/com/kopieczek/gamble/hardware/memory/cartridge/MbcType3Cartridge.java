@@ -1,33 +1,37 @@
 package com.kopieczek.gamble.hardware.memory.cartridge;
 
-import com.fasterxml.jackson.core.util.ByteArrayBuilder;
-import com.google.common.base.Preconditions;
 import com.kopieczek.gamble.hardware.memory.MemoryModule;
 import com.kopieczek.gamble.hardware.memory.Mmu;
 import com.kopieczek.gamble.hardware.memory.RamModule;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 public class MbcType3Cartridge extends GameCartridge {
-    private BankedRom romBank;
+    private RomBank romBank;
     private BankedRam ramBank;
+    private final RealTimeClock rtc;
+    private int lastLatchWrite = -1;
+    private boolean isClockDirty = false; // Set when the game sets or halts the clock
 
-    public MbcType3Cartridge(int[] data) {
-        super(data);
+    public MbcType3Cartridge(RomImage rom) {
+        this(rom, System::currentTimeMillis);
     }
 
-    @Override
-    protected MemoryModule buildRom0(int[] data) {
-        return new MemoryModule(Mmu.ROM_0_SIZE) {
-            @Override
-            public int readByte(int address){
-                return data[address];
-            }
+    /**
+     * @param currentTimeMillis Time source for the real-time clock, e.g. derived from the emulated cycle count.
+     */
+    public MbcType3Cartridge(RomImage rom, LongSupplier currentTimeMillis) {
+        super(rom);
+        rtc = new RealTimeClock(currentTimeMillis);
+    }
 
+    @Override
+    protected MemoryModule buildRom0(RomImage rom) {
+        return new RomBank(rom, 0) {
             @Override
             protected void setByteDirect(int address, int value) {
                 if (address < 0x2000) {
@@ -35,64 +39,100 @@ public class MbcType3Cartridge extends GameCartridge {
                 } else {
                     value &= 0x7f;
                     value = (value == 0x00) ? 0x01 : value; // Requests for bank 0 must yield bank 1
-                    romBank.switchBank(value);
+                    romBank.setBank(value);
                 }
             }
         };
     }
 
     @Override
-    protected MemoryModule buildRom1(int[] data) {
-        romBank = new BankedRom(data);
+    protected MemoryModule buildRom1(RomImage rom) {
+        romBank = new RomBank(rom, 1) {
+            @Override
+            protected void setByteDirect(int address, int value) {
+                if (address < 0x2000) {
+                    ramBank.setBank(value);
+                } else {
+                    // Writing 0x00 then 0x01 latches the clock.
+                    if (lastLatchWrite == 0x00 && value == 0x01) {
+                        rtc.latch();
+                    }
+                    lastLatchWrite = value;
+                }
+            }
+        };
         return romBank;
     }
 
     @Override
-    protected MemoryModule buildRam(int[] data) {
+    protected MemoryModule buildRam(RomImage rom) {
         ramBank = new BankedRam();
         return ramBank;
     }
 
+    /**
+     * Exports RAM followed by the real-time clock's state.
+     */
     @Override
     public byte[] exportRamData() {
-        return ramBank.exportData();
+        byte[] ram = ramBank.exportData();
+        byte[] output = Arrays.copyOf(ram, ram.length + RealTimeClock.EXPORT_SIZE_IN_BYTES);
+        System.arraycopy(rtc.exportData(), 0, output, ram.length, RealTimeClock.EXPORT_SIZE_IN_BYTES);
+        return output;
     }
 
+    /**
+     * Imports RAM, followed by the real-time clock's state if present; RAM exported before the clock was
+     * supported is accepted too, as is RAM in the older four-bytes-per-byte layout.
+     */
     @Override
     public void importRamData(byte[] data) {
+        int rtcSize = RealTimeClock.EXPORT_SIZE_IN_BYTES;
+        int legacyRamSize = getLegacyExportSize(ramBank.ramBanks);
+        if (data.length == BankedRam.EXPORT_SIZE_IN_BYTES + rtcSize || data.length == legacyRamSize + rtcSize) {
+            int ramSize = data.length - rtcSize;
+            rtc.importData(Arrays.copyOfRange(data, ramSize, data.length));
+            data = Arrays.copyOf(data, ramSize);
+        }
         ramBank.importData(data);
     }
 
-    private class BankedRom extends MemoryModule {
-        private int[] data;
-        private int bank = 1;
-
-        private BankedRom(int[] data) {
-            super(Mmu.ROM_1_SIZE);
-            this.data = data;
-        }
+    @Override
+    public void updateExportedRamPages(BitSet pages, byte[] image) {
+        exportRamPages(ramBank.ramBanks, pages.get(0, getClockPage()), image);
+        // The clock moves without any RAM being written, so always refresh it.
+        System.arraycopy(rtc.exportData(), 0, image, BankedRam.EXPORT_SIZE_IN_BYTES, RealTimeClock.EXPORT_SIZE_IN_BYTES);
+    }
 
-        @Override
-        public int readByte(int address) {
-            return data[Mmu.ROM_1_SIZE * bank + address];
+    /**
+     * Returns the dirty RAM pages, plus the page after them if the clock registers have been written to.
+     */
+    @Override
+    public BitSet getDirtyRamPages() {
+        BitSet dirtyPages = collectDirtyPages(ramBank.ramBanks);
+        if (isClockDirty) {
+            dirtyPages.set(getClockPage());
         }
+        return dirtyPages;
+    }
 
-        @Override
-        protected void setByteDirect(int address, int value) {
-            if (address == 0x0000) {
-                ramBank.setBank(value);
-            }
-        }
+    @Override
+    public void clearDirtyRamPages() {
+        clearDirtyPages(ramBank.ramBanks);
+        isClockDirty = false;
+    }
 
-        private void switchBank(int bank) {
-            this.bank = bank;
-        }
+    private static int getClockPage() {
+        return BankedRam.EXPORT_SIZE_IN_BYTES / RamModule.PAGE_SIZE;
     }
 
     private class BankedRam extends MemoryModule {
         private static final int NUM_BANKS = 8;
+        private static final int EXPORT_SIZE_IN_BYTES = Mmu.EXT_RAM_SIZE * NUM_BANKS;
+        private static final int NO_RTC_REGISTER = -1;
         private boolean isEnabled = false;
         private int bankIdx = 0;
+        private int rtcRegister = NO_RTC_REGISTER;
         private final List<RamModule> ramBanks = new ArrayList<>();
 
         private BankedRam() {
@@ -112,45 +152,62 @@ public class MbcType3Cartridge extends GameCartridge {
 
         @Override
         public int readByte(int address) {
-            if (isEnabled) {
+            if (!isEnabled) {
+                return 0xff;
+            } else if (rtcRegister != NO_RTC_REGISTER) {
+                return rtc.readRegister(rtcRegister);
+            } else {
                 return ramBanks.get(bankIdx).readByte(address);
+            }
+        }
+
+        @Override
+        public void readBlock(int address, int[] dest, int offset, int length) {
+            if (rtcRegister != NO_RTC_REGISTER) {
+                super.readBlock(address, dest, offset, length);
+            } else if (isEnabled) {
+                ramBanks.get(bankIdx).readBlock(address, dest, offset, length);
             } else {
-                return 0xff;
+                Arrays.fill(dest, offset, offset + length, 0xff);
             }
         }
 
         @Override
         protected void setByteDirect(int address, int value) {
-            if (isEnabled) {
+            if (!isEnabled) {
+                return;
+            } else if (rtcRegister != NO_RTC_REGISTER) {
+                rtc.writeRegister(rtcRegister, value);
+                isClockDirty = true;
+            } else {
                 ramBanks.get(bankIdx).setByte(address, value);
             }
         }
 
+        @Override
+        protected void writeBlockDirect(int address, int[] src, int offset, int length) {
+            if (rtcRegister != NO_RTC_REGISTER) {
+                super.writeBlockDirect(address, src, offset, length);
+            } else if (isEnabled) {
+                ramBanks.get(bankIdx).writeBlock(address, src, offset, length);
+            }
+        }
+
         public void setBank(int bankIdx) {
             if (bankIdx < NUM_BANKS) {
                 this.bankIdx = bankIdx;
+                rtcRegister = NO_RTC_REGISTER;
+            } else if (bankIdx >= RealTimeClock.FIRST_REGISTER && bankIdx <= RealTimeClock.LAST_REGISTER) {
+                rtcRegister = bankIdx;
             }
         }
 
         byte[] exportData() {
-            int size = Mmu.EXT_RAM_SIZE * NUM_BANKS * 4;  // 4 bytes in an int
-            byte[] output = new byte[size];
-            ByteBuffer bb = ByteBuffer.wrap(output).order(ByteOrder.LITTLE_ENDIAN);
-            for (RamModule bank : ramBanks) {
-                byte[] bankData = bank.exportData();
-                Preconditions.checkArgument(bankData.length == Mmu.EXT_RAM_SIZE * 4);
-                bb.put(bankData);
-            }
-            return output;
+            return exportRamBanks(ramBanks);
         }
 
         void importData(byte[] data) {
-            Preconditions.checkArgument(data.length == Mmu.EXT_RAM_SIZE * NUM_BANKS * 4);
-            for (int idx = 0; idx < NUM_BANKS; idx++) {
-                int start = Mmu.EXT_RAM_SIZE * 4 * idx;
-                int end = start + Mmu.EXT_RAM_SIZE * 4;
-                ramBanks.get(idx).importData(Arrays.copyOfRange(data, start, end));
-            }
+            importRamBanks(ramBanks, data);
         }
     }
 }
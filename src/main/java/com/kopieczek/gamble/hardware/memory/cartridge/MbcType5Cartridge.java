@@ -0,0 +1,103 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.kopieczek.gamble.hardware.memory.MemoryModule;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+
+import java.util.BitSet;
+
+/**
+ * MBC5: up to 512 ROM banks selected by a 9-bit register, and up to 16 RAM banks.
+ *
+ * Unlike MBC1 and MBC3, bank 0 can be mapped into the switchable ROM area.
+ * On rumble cartridges, bit 3 of the RAM bank register drives the motor instead of selecting a bank.
+ */
+class MbcType5Cartridge extends GameCartridge {
+    private RomBank romBank;
+    private BankedByteRam ram;
+    private int numRomBanks;
+    private int romBankRegister = 1;
+    private boolean hasRumble;
+    private boolean isRumbling = false;
+
+    MbcType5Cartridge(RomImage rom) {
+        super(rom);
+    }
+
+    @Override
+    protected MemoryModule buildRom0(RomImage rom) {
+        numRomBanks = Math.max(1, rom.size() / Mmu.ROM_1_SIZE);
+        return new RomBank(rom, 0) {
+            @Override
+            protected void setByteDirect(int address, int value) {
+                if (address < 0x2000) {
+                    ram.setEnabled((value & 0x0f) == 0x0a);
+                } else if (address < 0x3000) {
+                    setRomBankRegister((romBankRegister & 0x100) | value);
+                } else {
+                    setRomBankRegister(((value & 0x01) << 8) | (romBankRegister & 0xff));
+                }
+            }
+        };
+    }
+
+    @Override
+    protected MemoryModule buildRom1(RomImage rom) {
+        romBank = new RomBank(rom, 1) {
+            @Override
+            protected void setByteDirect(int address, int value) {
+                if (address < 0x2000) {
+                    if (hasRumble) {
+                        isRumbling = (value & 0x08) != 0;
+                        ram.setBank(value & 0x07);
+                    } else {
+                        ram.setBank(value & 0x0f);
+                    }
+                }
+            }
+        };
+        return romBank;
+    }
+
+    @Override
+    protected MemoryModule buildRam(RomImage rom) {
+        int cartridgeType = rom.getHeader().getCartridgeType();
+        hasRumble = (cartridgeType >= 0x1c && cartridgeType <= 0x1e);
+        boolean hasRam = (cartridgeType != 0x19 && cartridgeType != 0x1c);
+        ram = new BankedByteRam(hasRam ? rom.getHeader().getRamSizeInBytes() : 0);
+        return ram;
+    }
+
+    private void setRomBankRegister(int value) {
+        romBankRegister = value;
+        romBank.setBank(romBankRegister % numRomBanks);
+    }
+
+    boolean isRumbling() {
+        return isRumbling;
+    }
+
+    @Override
+    public BitSet getDirtyRamPages() {
+        return ram.getDirtyPages();
+    }
+
+    @Override
+    public void clearDirtyRamPages() {
+        ram.clearDirtyPages();
+    }
+
+    @Override
+    public byte[] exportRamData() {
+        return ram.exportData();
+    }
+
+    @Override
+    public void importRamData(byte[] data) {
+        ram.importData(data);
+    }
+
+    @Override
+    public void updateExportedRamPages(BitSet pages, byte[] image) {
+        ram.exportPages(pages, image);
+    }
+}
@@ -0,0 +1,152 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.kopieczek.gamble.hardware.memory.MemoryModule;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+
+import java.util.BitSet;
+
+/**
+ * MMM01: a multi-game mapper. It boots into a menu held in the last 32KB of the ROM, which picks a game by setting
+ * the upper ROM bank bits and then 'maps' the cartridge; from then on the upper bits are locked, and the game sees
+ * an MBC1-like mapper whose bank 0 is the start of its own slice of the ROM.
+ *
+ * The 9-bit ROM bank is made up of:
+ *  - bits 0-4 from 0x2000-0x3fff (bits 0-4), the only ones the game can change, less any masked off via 0x6000;
+ *  - bits 5-6 from 0x2000-0x3fff (bits 5-6), locked once mapped;
+ *  - bits 7-8 from 0x4000-0x5fff (bits 4-5), locked once mapped.
+ * Games are only ever windows onto the shared ROM image; nothing is copied.
+ */
+class Mmm01Cartridge extends GameCartridge {
+    static final int MENU_SIZE = 2 * Mmu.ROM_1_SIZE;
+    private static final int UNMAPPED_ROM_0_BANK = 0x1fe;
+    private static final int UNMAPPED_ROM_1_BANK = 0x1ff;
+
+    private RomBank rom0;
+    private RomBank rom1;
+    private BankedByteRam ram;
+    private int numRomBanks;
+
+    private boolean isMapped;
+    private int romBankLow;
+    private int romBankMid;
+    private int romBankHigh;
+    private int romBankMask; // Bits 1-4 of the low ROM bank bits that the game may not change.
+    private int ramBankLow;
+    private int ramBankHigh;
+
+    Mmm01Cartridge(RomImage rom) {
+        super(rom);
+        romBankLow = 0x01;
+        updateBanks();
+    }
+
+    /**
+     * Whether the ROM's last 32KB, where the menu lives, declares itself an MMM01 cartridge.
+     * Dumps of these carts usually carry the first game's header at the start of the ROM instead.
+     */
+    static boolean isMmm01(RomImage rom) {
+        if (rom.size() < 2 * MENU_SIZE) {
+            return false;
+        }
+        CartridgeHeader menuHeader = getMenuHeader(rom);
+        int menuType = menuHeader.getCartridgeType();
+        return menuType >= 0x0b && menuType <= 0x0d && menuHeader.isChecksumValid();
+    }
+
+    static CartridgeHeader getMenuHeader(RomImage rom) {
+        return new CartridgeHeader(rom, rom.size() - MENU_SIZE);
+    }
+
+    @Override
+    protected MemoryModule buildRom0(RomImage rom) {
+        numRomBanks = Math.max(1, rom.size() / Mmu.ROM_1_SIZE);
+        rom0 = new RomBank(rom, 0) {
+            @Override
+            protected void setByteDirect(int address, int value) {
+                if (address < 0x2000) {
+                    ram.setEnabled((value & 0x0f) == 0x0a);
+                    if ((value & 0x40) != 0) {
+                        isMapped = true;
+                    }
+                } else if (isMapped) {
+                    romBankLow = (romBankLow & romBankMask) | (value & 0x1f & ~romBankMask);
+                } else {
+                    romBankLow = value & 0x1f;
+                    romBankMid = (value >> 5) & 0x03;
+                }
+                updateBanks();
+            }
+        };
+        return rom0;
+    }
+
+    @Override
+    protected MemoryModule buildRom1(RomImage rom) {
+        rom1 = new RomBank(rom, 1) {
+            @Override
+            protected void setByteDirect(int address, int value) {
+                if (address < 0x2000) {
+                    ramBankLow = value & 0x03;
+                    if (!isMapped) {
+                        ramBankHigh = (value >> 2) & 0x03;
+                        romBankHigh = (value >> 4) & 0x03;
+                    }
+                } else if (!isMapped) {
+                    romBankMask = ((value >> 2) & 0x0f) << 1;
+                }
+                updateBanks();
+            }
+        };
+        return rom1;
+    }
+
+    @Override
+    protected MemoryModule buildRam(RomImage rom) {
+        // Carts detected only by the type in their usual header have no menu header we can trust.
+        CartridgeHeader header = isMmm01(rom) ? getMenuHeader(rom) : rom.getHeader();
+        int ramSize = header.getRamSizeInBytes();
+        ram = new BankedByteRam(ramSize);
+        return ram;
+    }
+
+    private void updateBanks() {
+        if (!isMapped) {
+            rom0.setBank(UNMAPPED_ROM_0_BANK % numRomBanks);
+            rom1.setBank(UNMAPPED_ROM_1_BANK % numRomBanks);
+        } else {
+            int outerBits = (romBankHigh << 7) | (romBankMid << 5);
+            int lowBits = romBankLow;
+            if ((lowBits & ~romBankMask & 0x1f) == 0) {
+                lowBits |= 0x01; // As on MBC1, requests for the game's bank 0 yield its bank 1.
+            }
+            rom0.setBank((outerBits | (romBankLow & romBankMask)) % numRomBanks);
+            rom1.setBank((outerBits | lowBits) % numRomBanks);
+        }
+        ram.setBank((ramBankHigh << 2) | ramBankLow);
+    }
+
+    @Override
+    public BitSet getDirtyRamPages() {
+        return ram.getDirtyPages();
+    }
+
+    @Override
+    public void clearDirtyRamPages() {
+        ram.clearDirtyPages();
+    }
+
+    @Override
+    public byte[] exportRamData() {
+        return ram.exportData();
+    }
+
+    @Override
+    public void importRamData(byte[] data) {
+        ram.importData(data);
+    }
+
+    @Override
+    public void updateExportedRamPages(BitSet pages, byte[] image) {
+        ram.exportPages(pages, image);
+    }
+}
@@ -0,0 +1,140 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.LongSupplier;
+
+/**
+ * The MBC3 real-time clock.
+ *
+ * Nothing here ticks. The clock keeps a base value (in seconds) and the time at which it held that value; the
+ * current value is worked out from the elapsed time only when the game latches the clock or writes to it.
+ * Time comes from a millisecond time source, which is host wall-clock time unless told otherwise.
+ *
+ * The registers are numbered as the bank select values that map them into the external RAM area:
+ * 0x08 seconds, 0x09 minutes, 0x0a hours, 0x0b low 8 bits of the day counter, and 0x0c for
+ * bit 8 of the day counter (bit 0), halt (bit 6) and day counter carry (bit 7).
+ */
+class RealTimeClock {
+    static final int FIRST_REGISTER = 0x08;
+    static final int LAST_REGISTER = 0x0c;
+    // Current registers, latched registers, then a 64-bit unix timestamp; as used by other emulators' save files.
+    static final int EXPORT_SIZE_IN_BYTES = 48;
+
+    private static final int SECONDS = 0x08;
+    private static final int MINUTES = 0x09;
+    private static final int HOURS = 0x0a;
+    private static final int DAYS_LOW = 0x0b;
+    private static final int DAYS_HIGH = 0x0c;
+    private static final int NUM_REGISTERS = LAST_REGISTER - FIRST_REGISTER + 1;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final long DAYS_IN_COUNTER = 512;
+    private static final int HALT_BIT = 0x40;
+    private static final int CARRY_BIT = 0x80;
+
+    private final LongSupplier currentTimeMillis;
+    private long baseSeconds = 0; // Clock value when the time source read referenceMillis
+    private long referenceMillis;
+    private boolean isHalted = false;
+    private boolean hasCarried = false;
+    private final int[] latched = new int[NUM_REGISTERS];
+
+    RealTimeClock(LongSupplier currentTimeMillis) {
+        this.currentTimeMillis = currentTimeMillis;
+        this.referenceMillis = currentTimeMillis.getAsLong();
+    }
+
+    /**
+     * Copies the clock's current value into the registers the game reads.
+     */
+    void latch() {
+        int[] current = getCurrentRegisters();
+        System.arraycopy(current, 0, latched, 0, NUM_REGISTERS);
+    }
+
+    int readRegister(int register) {
+        return latched[register - FIRST_REGISTER];
+    }
+
+    void writeRegister(int register, int value) {
+        int[] current = getCurrentRegisters();
+        current[register - FIRST_REGISTER] = value;
+        latched[register - FIRST_REGISTER] = value;
+        setCurrentRegisters(current);
+    }
+
+    byte[] exportData() {
+        ByteBuffer bb = ByteBuffer.allocate(EXPORT_SIZE_IN_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int value : getCurrentRegisters()) {
+            bb.putInt(value);
+        }
+        for (int value : latched) {
+            bb.putInt(value);
+        }
+        bb.putLong(currentTimeMillis.getAsLong() / 1000);
+        return bb.array();
+    }
+
+    /**
+     * Restores the clock from exported data. Unless it was halted, it will have kept running since the export.
+     */
+    void importData(byte[] data) {
+        Preconditions.checkArgument(data.length == EXPORT_SIZE_IN_BYTES,
+                "Expected %s bytes of RTC data but got %s", EXPORT_SIZE_IN_BYTES, data.length);
+        ByteBuffer bb = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        int[] current = new int[NUM_REGISTERS];
+        for (int idx = 0; idx < NUM_REGISTERS; idx++) {
+            current[idx] = bb.getInt();
+        }
+        for (int idx = 0; idx < NUM_REGISTERS; idx++) {
+            latched[idx] = bb.getInt();
+        }
+        long savedAtSeconds = bb.getLong();
+
+        setCurrentRegisters(current);
+        referenceMillis = savedAtSeconds * 1000;
+    }
+
+    private int[] getCurrentRegisters() {
+        long totalSeconds = getCurrentSeconds();
+        long days = totalSeconds / SECONDS_PER_DAY;
+        int[] registers = new int[NUM_REGISTERS];
+        registers[SECONDS - FIRST_REGISTER] = (int) (totalSeconds % 60);
+        registers[MINUTES - FIRST_REGISTER] = (int) ((totalSeconds / 60) % 60);
+        registers[HOURS - FIRST_REGISTER] = (int) ((totalSeconds / 3600) % 24);
+        registers[DAYS_LOW - FIRST_REGISTER] = (int) (days & 0xff);
+        registers[DAYS_HIGH - FIRST_REGISTER] = (int) ((days >> 8) & 0x01)
+                | (isHalted ? HALT_BIT : 0)
+                | (hasCarried ? CARRY_BIT : 0);
+        return registers;
+    }
+
+    private void setCurrentRegisters(int[] registers) {
+        int daysHigh = registers[DAYS_HIGH - FIRST_REGISTER];
+        long days = ((daysHigh & 0x01) << 8) | (registers[DAYS_LOW - FIRST_REGISTER] & 0xff);
+        baseSeconds = days * SECONDS_PER_DAY
+                + (registers[HOURS - FIRST_REGISTER] & 0x1f) * 3600L
+                + (registers[MINUTES - FIRST_REGISTER] & 0x3f) * 60L
+                + (registers[SECONDS - FIRST_REGISTER] & 0x3f);
+        referenceMillis = currentTimeMillis.getAsLong();
+        isHalted = (daysHigh & HALT_BIT) != 0;
+        hasCarried = (daysHigh & CARRY_BIT) != 0;
+    }
+
+    private long getCurrentSeconds() {
+        if (!isHalted) {
+            // Fold whole elapsed seconds into the base, keeping any partial second for next time.
+            long elapsedSeconds = Math.max(0, (currentTimeMillis.getAsLong() - referenceMillis) / 1000);
+            baseSeconds += elapsedSeconds;
+            referenceMillis += elapsedSeconds * 1000;
+        }
+
+        if (baseSeconds >= DAYS_IN_COUNTER * SECONDS_PER_DAY) {
+            hasCarried = true;
+            baseSeconds %= DAYS_IN_COUNTER * SECONDS_PER_DAY;
+        }
+        return baseSeconds;
+    }
+}
@@ -0,0 +1,59 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.kopieczek.gamble.hardware.memory.MemoryModule;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * A bank-sized window onto a {@link RomImage}. Switching bank only moves the window's offset.
+ *
+ * Writes are ignored by default; MBCs override {@link #setByteDirect} to interpret them as register writes.
+ */
+class RomBank extends MemoryModule {
+    private static final Logger log = LogManager.getLogger(RomBank.class);
+    private final RomImage rom;
+    private int offset;
+    private int limit; // Number of bytes in this bank that actually exist in the image.
+
+    RomBank(RomImage rom, int bank) {
+        super(Mmu.ROM_1_SIZE);
+        this.rom = rom;
+        setBank(bank);
+    }
+
+    void setBank(int bank) {
+        // This calculation relies on the fact that ROM_0_SIZE == ROM_1_SIZE.
+        offset = bank * Mmu.ROM_1_SIZE;
+        limit = Math.max(0, Math.min(Mmu.ROM_1_SIZE, rom.size() - offset));
+    }
+
+    @Override
+    public int readByte(int address) {
+        // Banks past the end of the image read as zeroes.
+        return (address < limit) ? rom.readByte(offset + address) : 0x00;
+    }
+
+    @Override
+    public void readBlock(int address, int[] dest, int destOffset, int length) {
+        int present = Math.max(0, Math.min(length, limit - address));
+        rom.readBlock(offset + address, dest, destOffset, present);
+        Arrays.fill(dest, destOffset + present, destOffset + length, 0x00);
+    }
+
+    @Override
+    public int readWord(int address) {
+        if (address + 1 < limit) {
+            return rom.readByte(offset + address) | (rom.readByte(offset + address + 1) << 8);
+        }
+        return super.readWord(address);
+    }
+
+    @Override
+    protected void setByteDirect(int address, int value) {
+        log.warn("Program attempted to write to ROM in module {} at address {}",
+                this, Integer.toHexString(address));
+    }
+}
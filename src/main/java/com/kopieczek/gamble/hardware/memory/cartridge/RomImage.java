@@ -0,0 +1,96 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The raw contents of a cartridge ROM, held once in a single read-only buffer.
+ *
+ * Cartridges never copy out of the image; their ROM banks are windows onto it at some offset.
+ * Since the image is immutable it can be shared freely between any number of emulator instances.
+ * Images loaded from disk are memory-mapped, so processes running the same ROM also share it via the page cache.
+ */
+public final class RomImage {
+    private static final Logger log = LogManager.getLogger(RomImage.class);
+
+    // Images loaded from disk are held weakly, so that instances loading the same ROM share one copy
+    // for as long as any of them is alive.
+    private static final Cache<String, RomImage> loadedImages = CacheBuilder.newBuilder().weakValues().build();
+
+    private final ByteBuffer data;
+    private final CartridgeHeader header;
+
+    private RomImage(ByteBuffer data) {
+        this.data = data.asReadOnlyBuffer();
+        this.header = new CartridgeHeader(this);
+    }
+
+    /**
+     * Wraps the given bytes without copying them. The caller must not modify the array afterwards.
+     */
+    public static RomImage wrap(byte[] data) {
+        return new RomImage(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Builds an image from unsigned byte values, one per int.
+     */
+    public static RomImage fromUnsigned(int[] data) {
+        byte[] bytes = new byte[data.length];
+        for (int idx = 0; idx < data.length; idx++) {
+            bytes[idx] = (byte) data[idx];
+        }
+        return wrap(bytes);
+    }
+
+    /**
+     * Maps the ROM at the given path read-only, or returns the existing image if that file is already loaded
+     * and has not changed on disk since.
+     */
+    public static RomImage load(File f) throws IOException {
+        String key = f.getCanonicalPath() + ":" + f.length() + ":" + f.lastModified();
+        try {
+            return loadedImages.get(key, () -> map(f));
+        } catch (ExecutionException e) {
+            throw (IOException) e.getCause();
+        }
+    }
+
+    private static RomImage map(File f) throws IOException {
+        log.debug("Mapping ROM image from {}", f);
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return new RomImage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int readByte(int offset) {
+        return data.get(offset) & 0xff;
+    }
+
+    /**
+     * Copies <code>length</code> unsigned bytes starting at <code>offset</code> into <code>dest</code>.
+     */
+    public void readBlock(int offset, int[] dest, int destOffset, int length) {
+        for (int idx = 0; idx < length; idx++) {
+            dest[destOffset + idx] = data.get(offset + idx) & 0xff;
+        }
+    }
+
+    public int size() {
+        return data.capacity();
+    }
+
+    public CartridgeHeader getHeader() {
+        return header;
+    }
+}
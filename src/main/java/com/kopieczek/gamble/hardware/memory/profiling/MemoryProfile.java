@@ -0,0 +1,124 @@
+package com.kopieczek.gamble.hardware.memory.profiling;
+
+import com.kopieczek.gamble.hardware.memory.Mmu;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * A point-in-time copy of the counts gathered by a {@link MemoryProfiler}.
+ */
+public class MemoryProfile {
+    private static final int HEATMAP_GRID_SIZE = 16; // 16x16 cells; one per page
+    private static final int HEATMAP_CELL_SIZE = 16;
+    private static final int HEATMAP_GAP = 8;
+
+    private final long[][] pageReads;
+    private final long[][] pageWrites;
+    private final long[][] ioReads;
+    private final long[][] ioWrites;
+
+    MemoryProfile(long[][] pageReads, long[][] pageWrites, long[][] ioReads, long[][] ioWrites) {
+        this.pageReads = pageReads;
+        this.pageWrites = pageWrites;
+        this.ioReads = ioReads;
+        this.ioWrites = ioWrites;
+    }
+
+    public long getPageReads(MemoryProfiler.Source source, int page) {
+        return pageReads[source.ordinal()][page];
+    }
+
+    public long getPageWrites(MemoryProfiler.Source source, int page) {
+        return pageWrites[source.ordinal()][page];
+    }
+
+    public long getIoRegisterReads(MemoryProfiler.Source source, int address) {
+        return ioReads[source.ordinal()][address - Mmu.IO_AREA_START];
+    }
+
+    public long getIoRegisterWrites(MemoryProfiler.Source source, int address) {
+        return ioWrites[source.ordinal()][address - Mmu.IO_AREA_START];
+    }
+
+    /**
+     * Writes one row per page and per IO register that saw any traffic, in the form
+     * <code>region,address,source,reads,writes</code>. Addresses are the first address of the page or the register.
+     */
+    public void writeCsv(Writer out) {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("region,address,source,reads,writes");
+        for (MemoryProfiler.Source source : MemoryProfiler.Source.values()) {
+            for (int page = 0; page < MemoryProfiler.PAGE_COUNT; page++) {
+                writeRow(writer, "page", page << 8, source,
+                        getPageReads(source, page), getPageWrites(source, page));
+            }
+        }
+        for (MemoryProfiler.Source source : MemoryProfiler.Source.values()) {
+            for (int address = Mmu.IO_AREA_START; address < Mmu.ZRAM_START; address++) {
+                writeRow(writer, "io", address, source,
+                        getIoRegisterReads(source, address), getIoRegisterWrites(source, address));
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeRow(PrintWriter writer, String region, int address, MemoryProfiler.Source source,
+                                 long reads, long writes) {
+        if (reads > 0 || writes > 0) {
+            writer.printf("%s,0x%04x,%s,%d,%d%n", region, address, source, reads, writes);
+        }
+    }
+
+    /**
+     * Renders reads (left) and writes (right), summed over all sources, as two 16x16 grids with one cell per page.
+     * Page 0x00 is top-left and page 0xff bottom-right. Cells are shaded on a log scale from black to white.
+     */
+    public BufferedImage renderHeatmap() {
+        final int gridPixels = HEATMAP_GRID_SIZE * HEATMAP_CELL_SIZE;
+        BufferedImage image = new BufferedImage(gridPixels * 2 + HEATMAP_GAP, gridPixels, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        drawGrid(g, sumSources(pageReads), 0);
+        drawGrid(g, sumSources(pageWrites), gridPixels + HEATMAP_GAP);
+        g.dispose();
+        return image;
+    }
+
+    private static void drawGrid(Graphics2D g, long[] counts, int xOffset) {
+        long max = 1;
+        for (long count : counts) {
+            max = Math.max(max, count);
+        }
+
+        final double logMax = Math.log1p(max);
+        for (int page = 0; page < counts.length; page++) {
+            float heat = (float) (Math.log1p(counts[page]) / logMax);
+            g.setColor(getHeatColor(heat));
+            int x = xOffset + (page % HEATMAP_GRID_SIZE) * HEATMAP_CELL_SIZE;
+            int y = (page / HEATMAP_GRID_SIZE) * HEATMAP_CELL_SIZE;
+            g.fillRect(x, y, HEATMAP_CELL_SIZE, HEATMAP_CELL_SIZE);
+        }
+    }
+
+    private static Color getHeatColor(float heat) {
+        // Black -> red -> yellow -> white as heat goes from 0 to 1.
+        float red = Math.min(1f, heat * 3);
+        float green = Math.min(1f, Math.max(0f, heat * 3 - 1));
+        float blue = Math.min(1f, Math.max(0f, heat * 3 - 2));
+        return new Color(red, green, blue);
+    }
+
+    private static long[] sumSources(long[][] counts) {
+        long[] total = new long[counts[0].length];
+        for (long[] sourceCounts : counts) {
+            for (int idx = 0; idx < total.length; idx++) {
+                total[idx] += sourceCounts[idx];
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,62 @@
+package com.kopieczek.gamble.hardware.memory.profiling;
+
+import com.kopieczek.gamble.hardware.memory.Memory;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+
+/**
+ * Counts memory reads and writes per 256-byte page, and per register within the IO area, broken down by which
+ * component made the access. Components only get counted if they are handed memory wrapped by {@link #instrument}.
+ */
+public class MemoryProfiler {
+    static final int PAGE_COUNT = 0x100;
+    static final int IO_REGISTER_COUNT = Mmu.IO_AREA_SIZE;
+
+    public enum Source {
+        CPU,
+        GPU,
+        DMA
+    }
+
+    private final long[][] pageReads = new long[Source.values().length][PAGE_COUNT];
+    private final long[][] pageWrites = new long[Source.values().length][PAGE_COUNT];
+    private final long[][] ioReads = new long[Source.values().length][IO_REGISTER_COUNT];
+    private final long[][] ioWrites = new long[Source.values().length][IO_REGISTER_COUNT];
+
+    /**
+     * Returns a view of the given memory which records every access made through it against the given source.
+     */
+    public Memory instrument(Memory memory, Source source) {
+        return new ProfiledMemory(memory, this, source);
+    }
+
+    void recordRead(Source source, int address) {
+        record(pageReads, ioReads, source, address);
+    }
+
+    void recordWrite(Source source, int address) {
+        record(pageWrites, ioWrites, source, address);
+    }
+
+    private static void record(long[][] pages, long[][] ioRegisters, Source source, int address) {
+        final int sourceIdx = source.ordinal();
+        pages[sourceIdx][address >>> 8]++;
+        if (address >= Mmu.IO_AREA_START && address < Mmu.ZRAM_START) {
+            ioRegisters[sourceIdx][address - Mmu.IO_AREA_START]++;
+        }
+    }
+
+    /**
+     * Takes a copy of the counts gathered so far.
+     */
+    public MemoryProfile snapshot() {
+        return new MemoryProfile(copy(pageReads), copy(pageWrites), copy(ioReads), copy(ioWrites));
+    }
+
+    private static long[][] copy(long[][] counts) {
+        long[][] result = new long[counts.length][];
+        for (int idx = 0; idx < counts.length; idx++) {
+            result[idx] = counts[idx].clone();
+        }
+        return result;
+    }
+}
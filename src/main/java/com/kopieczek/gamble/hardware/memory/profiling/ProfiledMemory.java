@@ -0,0 +1,43 @@
+package com.kopieczek.gamble.hardware.memory.profiling;
+
+import com.kopieczek.gamble.hardware.memory.Memory;
+
+class ProfiledMemory implements Memory {
+    private final Memory delegate;
+    private final MemoryProfiler profiler;
+    private final MemoryProfiler.Source source;
+
+    ProfiledMemory(Memory delegate, MemoryProfiler profiler, MemoryProfiler.Source source) {
+        this.delegate = delegate;
+        this.profiler = profiler;
+        this.source = source;
+    }
+
+    @Override
+    public int readByte(int address) {
+        profiler.recordRead(source, address);
+        return delegate.readByte(address);
+    }
+
+    @Override
+    public void setByte(int address, int value) {
+        profiler.recordWrite(source, address);
+        delegate.setByte(address, value);
+    }
+
+    @Override
+    public void readBlock(int address, int[] dest, int offset, int length) {
+        for (int idx = 0; idx < length; idx++) {
+            profiler.recordRead(source, address + idx);
+        }
+        delegate.readBlock(address, dest, offset, length);
+    }
+
+    @Override
+    public void writeBlock(int address, int[] src, int offset, int length) {
+        for (int idx = 0; idx < length; idx++) {
+            profiler.recordWrite(source, address + idx);
+        }
+        delegate.writeBlock(address, src, offset, length);
+    }
+}
@@ -0,0 +1,17 @@
+package com.kopieczek.gamble.hardware.scheduler;
+
+/**
+ * A hardware component driven by the master clock.
+ */
+public interface Clocked {
+    /**
+     * Advances the component by the given number of clock cycles.
+     */
+    void stepAhead(int cycles);
+
+    /**
+     * Returns how many cycles the component can go without being stepped before anything observable happens,
+     * e.g. a register changing or an interrupt being raised.
+     */
+    int getCyclesUntilNextEvent();
+}
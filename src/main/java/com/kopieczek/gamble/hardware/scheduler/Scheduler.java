@@ -0,0 +1,121 @@
+package com.kopieczek.gamble.hardware.scheduler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Orders the hardware components' next events on the master cycle counter, so that each component is only stepped
+ * when something it does is due, rather than after every instruction.
+ *
+ * Each component is stepped through all the cycles since it was last stepped, in one go, once the master clock
+ * reaches its next event; then asked for its next event and requeued.
+ */
+public class Scheduler {
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Map<Clocked, Entry> entries = new HashMap<>();
+    private long cycles = 0;
+
+    public void register(Clocked component) {
+        if (entries.containsKey(component)) {
+            throw new IllegalArgumentException("Component " + component + " is already scheduled");
+        }
+
+        Entry entry = new Entry(component);
+        entry.syncedAt = cycles;
+        entry.updateNextEvent();
+        entries.put(component, entry);
+        queue.add(entry);
+    }
+
+    /**
+     * Moves the master clock on, stepping every component whose next event has now been reached.
+     */
+    public void advance(int cycleDelta) {
+        cycles += cycleDelta;
+        while (!queue.isEmpty() && queue.peek().nextEventAt <= cycles) {
+            Entry entry = queue.poll();
+            entry.catchUp();
+            queue.add(entry);
+        }
+    }
+
+    /**
+     * Brings the component up to the master clock now, and requeues it at its next event.
+     * Used when something other than the passage of time (e.g. a register write) changes what the component will do.
+     */
+    public void sync(Clocked component) {
+        Entry entry = getEntry(component);
+        // The entry is out of the queue if it is the one currently being stepped by advance(), which will requeue it.
+        boolean wasQueued = queue.remove(entry);
+        entry.catchUp();
+        if (wasQueued) {
+            queue.add(entry);
+        }
+    }
+
+    public void syncAll() {
+        entries.keySet().forEach(this::sync);
+    }
+
+    /**
+     * Drops the cycles the component has not yet been stepped through, e.g. because the hardware is stopped.
+     */
+    public void skip(Clocked component) {
+        Entry entry = getEntry(component);
+        boolean wasQueued = queue.remove(entry);
+        entry.syncedAt = cycles;
+        entry.updateNextEvent();
+        if (wasQueued) {
+            queue.add(entry);
+        }
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public long getCyclesUntilNextEvent() {
+        return queue.isEmpty() ? Long.MAX_VALUE : queue.peek().nextEventAt - cycles;
+    }
+
+    private Entry getEntry(Clocked component) {
+        Entry entry = entries.get(component);
+        if (entry == null) {
+            throw new IllegalArgumentException("Component " + component + " is not scheduled");
+        }
+        return entry;
+    }
+
+    private class Entry implements Comparable<Entry> {
+        private final Clocked component;
+        private long syncedAt;
+        private long nextEventAt;
+
+        private Entry(Clocked component) {
+            this.component = component;
+        }
+
+        private void catchUp() {
+            // Components are stepped at most Integer.MAX_VALUE cycles at a time. The cycles are marked as done
+            // before stepping, so a component that causes itself to be synced mid-step isn't stepped through them twice.
+            while (syncedAt < cycles) {
+                int delta = (int) Math.min(Integer.MAX_VALUE, cycles - syncedAt);
+                syncedAt += delta;
+                component.stepAhead(delta);
+            }
+            updateNextEvent();
+        }
+
+        private void updateNextEvent() {
+            // Instructions overshoot events by a few cycles, so a component may already be due again; in that case
+            // it is stepped on the next advance, as it would have been when every component ran every instruction.
+            nextEventAt = cycles + Math.max(1, component.getCyclesUntilNextEvent());
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Long.compare(nextEventAt, other.nextEventAt);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.kopieczek.gamble.savefiles;
+
+import com.kopieczek.gamble.hardware.governor.Governor;
+import com.kopieczek.gamble.hardware.memory.cartridge.Cartridge;
+import com.kopieczek.gamble.hardware.scheduler.Clocked;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persists battery-backed cartridge RAM in the background as the game writes to it.
+ *
+ * A few times a second of emulated time, the service picks up the cartridge's dirty RAM pages and copies just those
+ * into its own export image. Once a check finds no new writes, the game has finished saving and a copy of the image
+ * is handed to a background thread to write out. If the previous write is still in progress, only the newest
+ * snapshot is written once it completes.
+ *
+ * All methods must be called from the emulation thread, or from another thread once emulation has stopped; the
+ * cartridge's RAM and dirty pages are not safe to read while the emulation thread may be writing to them.
+ */
+public class AutosaveService implements Clocked {
+    private static final Logger log = LogManager.getLogger(AutosaveService.class);
+    private static final int CYCLES_PER_CHECK = Governor.FREQUENCY_HZ / 4;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final Cartridge cartridge;
+    private final SaveFileDb<String> db;
+    private final String key;
+    private final byte[] image;
+    private final AtomicReference<byte[]> pendingSnapshot = new AtomicReference<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int cyclesUntilCheck = CYCLES_PER_CHECK;
+    private boolean hasUnsavedChanges = false;
+    private boolean isEnabled = true; // Cleared if the existing save can't be restored, so it is never overwritten
+
+    /**
+     * Loads any existing save for the key into the cartridge, and starts tracking its RAM from there.
+     * If the save can't be restored (e.g. it is corrupt, or belongs to a different game with the same key), the game
+     * starts with blank RAM and nothing is saved for the key, so that the existing save is left as it was.
+     */
+    public AutosaveService(Cartridge cartridge, SaveFileDb<String> db, String key) {
+        this.cartridge = cartridge;
+        this.db = db;
+        this.key = key;
+        try {
+            db.getBytes(key).ifPresent(data -> {
+                log.info("Restoring saved RAM for {}", key);
+                cartridge.importRamData(data);
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to restore save for {}; autosave is disabled for this session", key, e);
+            isEnabled = false;
+        }
+        cartridge.clearDirtyRamPages();
+        image = cartridge.exportRamData();
+    }
+
+    @Override
+    public void stepAhead(int cycles) {
+        cyclesUntilCheck -= cycles;
+        if (cyclesUntilCheck <= 0) {
+            cyclesUntilCheck = CYCLES_PER_CHECK;
+            check();
+        }
+    }
+
+    @Override
+    public int getCyclesUntilNextEvent() {
+        return cyclesUntilCheck;
+    }
+
+    void check() {
+        if (!isEnabled) {
+            return;
+        } else if (collectDirtyPages()) {
+            hasUnsavedChanges = true;
+        } else if (hasUnsavedChanges) {
+            // Games write their saves in bursts; wait for a quiet period so that each burst is written once.
+            flush();
+        }
+    }
+
+    /**
+     * Queues the current RAM contents to be written, without waiting for the game to stop writing.
+     */
+    public void flush() {
+        if (!isEnabled) {
+            return;
+        }
+
+        collectDirtyPages();
+        hasUnsavedChanges = false;
+        if (pendingSnapshot.getAndSet(image.clone()) == null) {
+            writer.execute(this::writePendingSnapshot);
+        }
+    }
+
+    /**
+     * Writes out any unsaved changes and waits for all writes to finish. May be called from a shutdown hook, but
+     * only once emulation has stopped.
+     */
+    public void close() {
+        if (hasUnsavedChanges || !cartridge.getDirtyRamPages().isEmpty()) {
+            flush();
+        }
+
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.error("Timed out waiting for save of {} to be written", key);
+            }
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while waiting for save of {} to be written", key);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean collectDirtyPages() {
+        BitSet dirtyPages = cartridge.getDirtyRamPages();
+        if (dirtyPages.isEmpty()) {
+            return false;
+        }
+
+        cartridge.clearDirtyRamPages();
+        cartridge.updateExportedRamPages(dirtyPages, image);
+        return true;
+    }
+
+    private void writePendingSnapshot() {
+        byte[] snapshot = pendingSnapshot.getAndSet(null);
+        if (snapshot == null) {
+            return;
+        }
+
+        try {
+            log.debug("Writing {} bytes of saved RAM for {}", snapshot.length, key);
+            db.putBytes(key, snapshot);
+        } catch (RuntimeException e) {
+            log.error("Failed to write save for {}", key, e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.kopieczek.gamble.savefiles;
+
+import com.google.common.io.BaseEncoding;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps each save in its own file in a directory, so that saving one game never touches another.
+ *
+ * Saves are written to a temporary file which is synced and then renamed over the old one, and the directory is
+ * synced after the rename, so a crash leaves either the old save or the new one, never a mixture. Each file carries a
+ * CRC32 of its contents. Data that fits in unsigned bytes (i.e. all RAM) is stored one byte per value; anything else
+ * falls back to four.
+ *
+ * File layout: magic "GSAV", format version, encoding, value count, CRC32 of the payload, then the payload.
+ */
+public class DirectorySaveFileDb implements SaveFileDb<String> {
+    private static final Logger log = LogManager.getLogger(DirectorySaveFileDb.class);
+    private static final int MAGIC = 0x47534156; // "GSAV"
+    private static final byte VERSION = 1;
+    private static final byte ENCODING_BYTES = 0;
+    private static final byte ENCODING_INTS = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 4 + 8;
+    private static final String SAVE_SUFFIX = ".sav";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    // Case-insensitive, and safe in file names on every platform.
+    private static final BaseEncoding KEY_ENCODING = BaseEncoding.base32Hex().lowerCase().omitPadding();
+
+    private final Path directory;
+
+    private DirectorySaveFileDb(Path directory) {
+        this.directory = directory;
+    }
+
+    public static DirectorySaveFileDb initialize(File directory) {
+        try {
+            Files.createDirectories(directory.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        DirectorySaveFileDb db = new DirectorySaveFileDb(directory.toPath());
+        db.deleteAbandonedTempFiles();
+        return db;
+    }
+
+    /**
+     * Opens the database, first copying in any saves from a {@link HashMapDb} file, which is then renamed so that it
+     * is only migrated once. Saves already in the directory take precedence.
+     */
+    public static DirectorySaveFileDb initialize(File directory, File legacyHashMapDbFile) {
+        DirectorySaveFileDb db = initialize(directory);
+        if (legacyHashMapDbFile.exists()) {
+            log.info("Migrating saves from {} to {}", legacyHashMapDbFile, directory);
+            HashMapDb legacy = HashMapDb.initialize(legacyHashMapDbFile);
+            for (String key : legacy.keys()) {
+                if (!Files.exists(db.getPath(key))) {
+                    db.put(key, legacy.get(key).get());
+                }
+            }
+
+            File migrated = new File(legacyHashMapDbFile.getPath() + MIGRATED_SUFFIX);
+            if (!legacyHashMapDbFile.renameTo(migrated)) {
+                log.warn("Failed to rename {} after migration; it will be migrated again", legacyHashMapDbFile);
+            }
+        }
+        return db;
+    }
+
+    @Override
+    public void put(String key, int[] ramData) {
+        boolean fitsInBytes = true;
+        for (int value : ramData) {
+            if (value < 0 || value > 0xff) {
+                fitsInBytes = false;
+                break;
+            }
+        }
+
+        ByteBuffer payload;
+        if (fitsInBytes) {
+            payload = ByteBuffer.allocate(ramData.length);
+            for (int value : ramData) {
+                payload.put((byte) value);
+            }
+        } else {
+            payload = ByteBuffer.allocate(ramData.length * 4);
+            payload.asIntBuffer().put(ramData);
+        }
+        write(key, fitsInBytes ? ENCODING_BYTES : ENCODING_INTS, ramData.length, payload.array());
+    }
+
+    @Override
+    public void putBytes(String key, byte[] ramData) {
+        write(key, ENCODING_BYTES, ramData.length, ramData);
+    }
+
+    @Override
+    public Optional<int[]> get(String key) {
+        return read(key).map(file -> {
+            int[] values = new int[file.count];
+            if (file.encoding == ENCODING_BYTES) {
+                for (int idx = 0; idx < file.count; idx++) {
+                    values[idx] = file.payload.get() & 0xff;
+                }
+            } else {
+                file.payload.asIntBuffer().get(values);
+            }
+            return values;
+        });
+    }
+
+    /**
+     * As for any {@link SaveFileDb}, data stored with {@link #put} is truncated to its low byte per value.
+     */
+    @Override
+    public Optional<byte[]> getBytes(String key) {
+        return read(key).map(file -> {
+            byte[] bytes = new byte[file.count];
+            if (file.encoding == ENCODING_BYTES) {
+                file.payload.get(bytes);
+            } else {
+                for (int idx = 0; idx < file.count; idx++) {
+                    bytes[idx] = (byte) file.payload.getInt();
+                }
+            }
+            return bytes;
+        });
+    }
+
+    private void write(String key, byte encoding, int count, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .put(VERSION)
+                .put(encoding)
+                .putInt(count)
+                .putLong(crc.getValue());
+        header.flip();
+
+        Path target = getPath(key);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, target.getFileName().toString(), TEMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.write(new ByteBuffer[] {header, ByteBuffer.wrap(payload)});
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException(e);
+        }
+        syncDirectory();
+    }
+
+    /**
+     * Makes the last rename durable. Not every platform can open a directory for syncing, in which case the rename
+     * is left to the OS.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Unable to sync save directory {}", directory, e);
+        }
+    }
+
+    private Optional<SaveFile> read(String key) {
+        Path path = getPath(key);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+
+        ByteBuffer bb;
+        try {
+            bb = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (bb.remaining() < HEADER_SIZE || bb.getInt() != MAGIC) {
+            throw new IllegalStateException("Save file " + path + " is not a save file");
+        }
+        byte version = bb.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Save file " + path + " has unsupported version " + version);
+        }
+
+        SaveFile file = new SaveFile();
+        file.encoding = bb.get();
+        file.count = bb.getInt();
+        long expectedCrc = bb.getLong();
+        int payloadSize = file.count * ((file.encoding == ENCODING_BYTES) ? 1 : 4);
+        if (bb.remaining() != payloadSize) {
+            throw new IllegalStateException("Save file " + path + " is truncated");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bb.array(), HEADER_SIZE, payloadSize);
+        if (crc.getValue() != expectedCrc) {
+            throw new IllegalStateException("Save file " + path + " failed its checksum");
+        }
+
+        file.payload = bb.slice();
+        return Optional.of(file);
+    }
+
+    private Path getPath(String key) {
+        return directory.resolve(KEY_ENCODING.encode(key.getBytes(StandardCharsets.UTF_8)) + SAVE_SUFFIX);
+    }
+
+    private void deleteAbandonedTempFiles() {
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path temp : temps) {
+                log.warn("Deleting incomplete save {}", temp);
+                deleteQuietly(temp);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}", path, e);
+        }
+    }
+
+    private static class SaveFile {
+        private byte encoding;
+        private int count;
+        private ByteBuffer payload;
+    }
+}
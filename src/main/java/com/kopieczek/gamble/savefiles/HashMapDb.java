@@ -3,6 +3,7 @@ package com.kopieczek.gamble.savefiles;
 import java.io.*;
 import java.util.HashMap;
 import java.util.Optional;
+import java.util.Set;
 
 public class HashMapDb implements SaveFileDb<String> {
     private static final long serialVersionUID = 1L;
@@ -31,6 +32,10 @@ public class HashMapDb implements SaveFileDb<String> {
         return Optional.ofNullable(data.get(key));
     }
 
+    Set<String> keys() {
+        return data.keySet();
+    }
+
     private void persistDb() {
         try {
             FileOutputStream fout = new FileOutputStream(file);
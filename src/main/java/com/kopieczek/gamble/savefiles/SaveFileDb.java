@@ -5,4 +5,28 @@ import java.util.Optional;
 public interface SaveFileDb<T> {
     void put(T key, int[] ramData);
     Optional<int[]> get(T key);
+
+    /**
+     * Stores raw bytes, such as exported cartridge RAM.
+     */
+    default void putBytes(T key, byte[] ramData) {
+        int[] unsigned = new int[ramData.length];
+        for (int idx = 0; idx < ramData.length; idx++) {
+            unsigned[idx] = ramData[idx] & 0xff;
+        }
+        put(key, unsigned);
+    }
+
+    /**
+     * Fetches data stored with {@link #putBytes}.
+     */
+    default Optional<byte[]> getBytes(T key) {
+        return get(key).map(unsigned -> {
+            byte[] bytes = new byte[unsigned.length];
+            for (int idx = 0; idx < unsigned.length; idx++) {
+                bytes[idx] = (byte) unsigned[idx];
+            }
+            return bytes;
+        });
+    }
 }
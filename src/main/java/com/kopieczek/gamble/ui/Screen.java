@@ -8,6 +8,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
 public class Screen extends JPanel implements ActionListener {
     private static final float REDRAW_HZ = 60;
@@ -15,7 +16,9 @@ public class Screen extends JPanel implements ActionListener {
     private Timer repaintTimer = new Timer(REDRAW_DELAY, this);
     private final float DEFAULT_SCREEN_SCALE = 2;
     private final ScreenBuffer screenBuffer;
-    private BufferedImage toBlit;
+    private final BufferedImage toBlit =
+            new BufferedImage(Gpu.DISPLAY_WIDTH, Gpu.DISPLAY_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    private final long[] shownFingerprints = new long[Gpu.DISPLAY_HEIGHT];
 
     Screen(ScreenBuffer screenBuffer) {
         super();
@@ -26,31 +29,28 @@ public class Screen extends JPanel implements ActionListener {
         int height = (int)(Gpu.DISPLAY_HEIGHT * DEFAULT_SCREEN_SCALE);
         int width = (int)(Gpu.DISPLAY_WIDTH * DEFAULT_SCREEN_SCALE);
         setPreferredSize(new Dimension(width, height));
-        toBlit = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         repaintTimer.start();
     }
 
     @Override
     public void paintComponent(Graphics g) {
-        screenBuffer.updateScreenBuffer();
-        Color[][] currentFrame = screenBuffer.getScreen();
-        final int width = getWidth();
-        final int height = getHeight();
-        if (toBlit.getWidth() != width || toBlit.getHeight() != height) {
-            toBlit = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        if (screenBuffer.updateScreenBuffer()) {
+            copyChangedLines(screenBuffer.getScreen());
         }
 
-        final float scaleX = width/(float)Gpu.DISPLAY_WIDTH;
-        final float scaleY = height/(float)Gpu.DISPLAY_HEIGHT;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int pixelX = (int)(x / scaleX);
-                int pixelY = (int)(y / scaleY);
-                toBlit.setRGB(x, y, currentFrame[pixelY][pixelX].getRGB());
+        g.drawImage(toBlit, 0, 0, getWidth(), getHeight(), this);
+    }
+
+    private void copyChangedLines(ScreenBuffer.Frame frame) {
+        int[] pixels = ((DataBufferInt) toBlit.getRaster().getDataBuffer()).getData();
+        for (int line = 0; line < Gpu.DISPLAY_HEIGHT; line++) {
+            long fingerprint = frame.getLineFingerprint(line);
+            if (fingerprint == ScreenBuffer.NO_FINGERPRINT || fingerprint != shownFingerprints[line]) {
+                int lineStart = line * Gpu.DISPLAY_WIDTH;
+                System.arraycopy(frame.getPixels(), lineStart, pixels, lineStart, Gpu.DISPLAY_WIDTH);
+                shownFingerprints[line] = fingerprint;
             }
         }
-
-        g.drawImage(toBlit, 0, 0, this);
     }
 
     @Override
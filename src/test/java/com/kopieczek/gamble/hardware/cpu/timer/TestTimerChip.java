@@ -271,6 +271,38 @@ public class TestTimerChip {
         });
     }
 
+    @Test
+    public void test_multiple_rollovers_in_one_tick_restart_from_modulus() {
+        timerTest((registers, interrupts, timer) -> {
+            registers.setTimerModulus(0xf0);
+            registers.setCyclesPerTimerCounterTick(4);
+            timer.tick(4 * (0x100 + 0x10 * 3 + 5));
+            assertEquals(0xf5, registers.getTimerCounter());
+            assertEquals(Interrupt.TIMER, interrupts.getLastSet());
+        });
+    }
+
+    @Test
+    public void test_cycles_until_interrupt() {
+        timerTest((registers, interrupts, timer) -> {
+            registers.setCyclesPerTimerCounterTick(16);
+            timer.tick(5);
+            assertEquals(16 * 0x100 - 5, timer.getCyclesUntilInterrupt());
+            timer.tick(timer.getCyclesUntilInterrupt() - 1);
+            assertNull(interrupts.getLastSet());
+            timer.tick(1);
+            assertEquals(Interrupt.TIMER, interrupts.getLastSet());
+        });
+    }
+
+    @Test
+    public void test_no_interrupt_expected_when_timer_disabled() {
+        timerTest((registers, interrupts, timer) -> {
+            registers.setTimerEnabled(false);
+            assertEquals(Integer.MAX_VALUE, timer.getCyclesUntilInterrupt());
+        });
+    }
+
     @FunctionalInterface
     private interface TimerTest {
         void apply(MockTimerRegisters registers, MockInterrupts interrupts, TimerChip timer);
@@ -360,6 +392,16 @@ public class TestTimerChip {
             return 0;
         }
 
+        @Override
+        public boolean isInterruptEnabled(Interrupt interrupt) {
+            return false;
+        }
+
+        @Override
+        public boolean isInterruptPending() {
+            return false;
+        }
+
         public void reset() {
             lastSet = null;
         }
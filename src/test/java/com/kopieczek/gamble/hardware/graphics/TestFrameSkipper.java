@@ -0,0 +1,103 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import com.kopieczek.gamble.hardware.governor.Governor;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestFrameSkipper {
+    private static final long CYCLES_PER_FRAME = 70224;
+    private static final long NANOS_PER_FRAME = CYCLES_PER_FRAME * 1_000_000_000L / Governor.FREQUENCY_HZ;
+
+    @Test
+    public void test_every_frame_rendered_by_default() {
+        FrameSkipper skipper = new FrameSkipper(() -> 0);
+        for (int frame = 0; frame < 10; frame++) {
+            assertTrue(skipper.shouldRenderFrame(frame * CYCLES_PER_FRAME));
+        }
+    }
+
+    @Test
+    public void test_fixed_frame_skip() {
+        FrameSkipper skipper = new FrameSkipper(() -> 0);
+        skipper.setFixed(2);
+        for (int frame = 0; frame < 9; frame++) {
+            assertEquals(frame % 3 == 2, skipper.shouldRenderFrame(frame * CYCLES_PER_FRAME));
+        }
+    }
+
+    @Test
+    public void test_auto_skip_increases_while_host_is_slow() {
+        AtomicLong clock = new AtomicLong();
+        FrameSkipper skipper = new FrameSkipper(clock::get);
+        skipper.setAutomatic(3);
+        for (int frame = 0; frame < 10; frame++) {
+            skipper.shouldRenderFrame(frame * CYCLES_PER_FRAME);
+            clock.addAndGet(NANOS_PER_FRAME * 2);
+        }
+        assertEquals(3, skipper.getFramesToSkip());
+    }
+
+    @Test
+    public void test_auto_skip_backs_off_once_host_keeps_up() {
+        AtomicLong clock = new AtomicLong();
+        FrameSkipper skipper = new FrameSkipper(clock::get);
+        skipper.setAutomatic(3);
+        long frame = 0;
+        for (; frame < 3; frame++) {
+            skipper.shouldRenderFrame(frame * CYCLES_PER_FRAME);
+            clock.addAndGet(NANOS_PER_FRAME * 2);
+        }
+        assertEquals(2, skipper.getFramesToSkip());
+
+        // The first of these still measures the last slow frame.
+        for (int idx = 0; idx < 61; idx++, frame++) {
+            skipper.shouldRenderFrame(frame * CYCLES_PER_FRAME);
+            clock.addAndGet(NANOS_PER_FRAME / 2);
+        }
+        assertEquals(2, skipper.getFramesToSkip());
+    }
+
+    @Test
+    public void test_auto_skip_stays_off_when_host_keeps_up() {
+        AtomicLong clock = new AtomicLong();
+        FrameSkipper skipper = new FrameSkipper(clock::get);
+        skipper.setAutomatic(3);
+        for (int frame = 0; frame < 100; frame++) {
+            assertTrue(skipper.shouldRenderFrame(frame * CYCLES_PER_FRAME));
+            clock.addAndGet(NANOS_PER_FRAME);
+        }
+        assertFalse(skipper.getFramesToSkip() > 0);
+    }
+
+    @Test
+    public void test_auto_skip_stays_off_when_frame_times_jitter() {
+        AtomicLong clock = new AtomicLong();
+        FrameSkipper skipper = new FrameSkipper(clock::get);
+        skipper.setAutomatic(3);
+        Random random = new Random(1234);
+        for (int frame = 0; frame < 600; frame++) {
+            assertTrue("Frame " + frame, skipper.shouldRenderFrame(frame * CYCLES_PER_FRAME));
+            double jitter = 0.97 + random.nextDouble() * 0.06; // Within 3% either side
+            clock.addAndGet((long) (NANOS_PER_FRAME * jitter));
+        }
+        assertEquals(0, skipper.getFramesToSkip());
+    }
+
+    @Test
+    public void test_auto_skip_ignores_a_single_late_frame() {
+        AtomicLong clock = new AtomicLong();
+        FrameSkipper skipper = new FrameSkipper(clock::get);
+        skipper.setAutomatic(3);
+        for (int frame = 0; frame < 10; frame++) {
+            skipper.shouldRenderFrame(frame * CYCLES_PER_FRAME);
+            clock.addAndGet(frame == 5 ? NANOS_PER_FRAME * 3 / 2 : NANOS_PER_FRAME);
+        }
+        assertEquals(0, skipper.getFramesToSkip());
+    }
+}
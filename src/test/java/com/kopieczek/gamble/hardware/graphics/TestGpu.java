@@ -0,0 +1,464 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestGpu {
+    private static final int CYCLES_PER_FRAME = 70224;
+    private static final int WHITE = Color.WHITE.getRGB();
+    private static final int LIGHT_GRAY = Color.LIGHT_GRAY.getRGB();
+    private static final int DARK_GRAY = Color.DARK_GRAY.getRGB();
+    private static final int BLACK = Color.BLACK.getRGB();
+
+    // LCD on, window map 0x9c00, window off, tile data 0x8000, background map 0x9800, sprites on, background on
+    private static final int LCDC_DEFAULT = 0xd3;
+    private static final int LCDC_WINDOW_ENABLED = LCDC_DEFAULT | 0x20;
+
+    @Test
+    public void test_background_tiles() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800, 1);
+        int[] frame = renderFrame(mmu);
+        assertEquals(BLACK, pixel(frame, 0, 0));
+        assertEquals(BLACK, pixel(frame, 7, 7));
+        assertEquals(WHITE, pixel(frame, 8, 0));
+        assertEquals(WHITE, pixel(frame, 0, 8));
+    }
+
+    @Test
+    public void test_background_palette_is_applied() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800, 1);
+        mmu.setByte(0xff47, 0x90); // Color 3 -> dark gray, color 0 -> white
+        int[] frame = renderFrame(mmu);
+        assertEquals(DARK_GRAY, pixel(frame, 0, 0));
+    }
+
+    @Test
+    public void test_scroll_x_splits_tiles() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800, 1);
+        mmu.setByte(0xff43, 4);
+        int[] frame = renderFrame(mmu);
+        assertEquals(BLACK, pixel(frame, 3, 0));
+        assertEquals(WHITE, pixel(frame, 4, 0));
+        assertEquals(WHITE, pixel(frame, 159, 0));
+    }
+
+    @Test
+    public void test_scroll_x_wraps_tile_map() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800, 1);
+        mmu.setByte(0xff43, 252);
+        int[] frame = renderFrame(mmu);
+        assertEquals(WHITE, pixel(frame, 3, 0));
+        assertEquals(BLACK, pixel(frame, 4, 0));
+        assertEquals(BLACK, pixel(frame, 11, 0));
+        assertEquals(WHITE, pixel(frame, 12, 0));
+    }
+
+    @Test
+    public void test_scroll_y() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800 + 32, 1);
+        mmu.setByte(0xff42, 5);
+        int[] frame = renderFrame(mmu);
+        assertEquals(WHITE, pixel(frame, 0, 2));
+        assertEquals(BLACK, pixel(frame, 0, 3));
+        assertEquals(BLACK, pixel(frame, 0, 10));
+        assertEquals(WHITE, pixel(frame, 0, 11));
+    }
+
+    @Test
+    public void test_signed_tile_map_entries() {
+        Mmu mmu = buildMmu();
+        mmu.setByte(0xff40, LCDC_DEFAULT & ~0x10);
+        fillTile(mmu, 256 + 1, 3); // Tile 1 in the 0x9000 block
+        fillTile(mmu, 128 + 1, 2); // Tile -127
+        mmu.setByte(0x9800, 1);
+        mmu.setByte(0x9801, 0x81);
+        int[] frame = renderFrame(mmu);
+        assertEquals(BLACK, pixel(frame, 0, 0));
+        assertEquals(DARK_GRAY, pixel(frame, 8, 0));
+    }
+
+    @Test
+    public void test_window_covers_background() {
+        Mmu mmu = buildMmu();
+        mmu.setByte(0xff40, LCDC_WINDOW_ENABLED);
+        fillTile(mmu, 1, 3);
+        fillTile(mmu, 2, 1);
+        for (int idx = 0; idx < 32 * 32; idx++) {
+            mmu.setByte(0x9800 + idx, 1);
+            mmu.setByte(0x9c00 + idx, 2);
+        }
+        mmu.setByte(0xff4a, 10);  // WY
+        mmu.setByte(0xff4b, 20 + 7);  // WX
+        int[] frame = renderFrame(mmu);
+        assertEquals(BLACK, pixel(frame, 30, 9));
+        assertEquals(BLACK, pixel(frame, 19, 10));
+        assertEquals(LIGHT_GRAY, pixel(frame, 20, 10));
+        assertEquals(LIGHT_GRAY, pixel(frame, 159, 100));
+    }
+
+    @Test
+    public void test_window_starting_left_of_screen() {
+        Mmu mmu = buildMmu();
+        mmu.setByte(0xff40, LCDC_WINDOW_ENABLED);
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9c00, 1);
+        mmu.setByte(0xff4b, 3);  // WX = -4
+        int[] frame = renderFrame(mmu);
+        assertEquals(BLACK, pixel(frame, 0, 0));
+        assertEquals(BLACK, pixel(frame, 3, 0));
+        assertEquals(WHITE, pixel(frame, 4, 0));
+    }
+
+    @Test
+    public void test_foreground_sprite_covers_background() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        fillTile(mmu, 2, 1);
+        fillAllBackground(mmu, 1);
+        setSprite(mmu, 0, 10, 20, 2, 0x00);
+        int[] frame = renderFrame(mmu);
+        assertEquals(LIGHT_GRAY, pixel(frame, 20, 10));
+        assertEquals(LIGHT_GRAY, pixel(frame, 27, 17));
+        assertEquals(BLACK, pixel(frame, 28, 10));
+        assertEquals(BLACK, pixel(frame, 20, 18));
+    }
+
+    @Test
+    public void test_background_sprite_only_shows_over_color_0() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        fillTile(mmu, 2, 1);
+        mmu.setByte(0x9800, 1);
+        setSprite(mmu, 0, 0, 4, 2, 0x80);
+        int[] frame = renderFrame(mmu);
+        assertEquals(BLACK, pixel(frame, 4, 0));
+        assertEquals(BLACK, pixel(frame, 7, 0));
+        assertEquals(LIGHT_GRAY, pixel(frame, 8, 0));
+        assertEquals(LIGHT_GRAY, pixel(frame, 11, 0));
+        assertEquals(WHITE, pixel(frame, 12, 0));
+    }
+
+    @Test
+    public void test_flipped_sprite() {
+        Mmu mmu = buildMmu();
+        mmu.setByte(0x8020, 0x80); // Tile 2, row 0: only leftmost pixel is color 1
+        setSprite(mmu, 0, 0, 0, 2, 0x60); // Flip both ways
+        int[] frame = renderFrame(mmu);
+        assertEquals(WHITE, pixel(frame, 0, 0));
+        assertEquals(LIGHT_GRAY, pixel(frame, 7, 7));
+    }
+
+    @Test
+    public void test_tall_sprite_flipped_vertically_shows_bottom_pattern_on_top() {
+        Mmu mmu = buildMmu();
+        mmu.setByte(0xff40, LCDC_DEFAULT | 0x04);
+        fillTile(mmu, 4, 1);
+        fillTile(mmu, 5, 3);
+        setSprite(mmu, 0, 0, 0, 5, 0x00); // Low bit of the pattern index is ignored
+        setSprite(mmu, 1, 0, 8, 4, 0x40);
+        int[] frame = renderFrame(mmu);
+        assertEquals(LIGHT_GRAY, pixel(frame, 0, 0));
+        assertEquals(BLACK, pixel(frame, 0, 8));
+        assertEquals(BLACK, pixel(frame, 8, 0));
+        assertEquals(LIGHT_GRAY, pixel(frame, 8, 15));
+    }
+
+    @Test
+    public void test_sprite_palette_1_and_palette_changes() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 2, 1);
+        setSprite(mmu, 0, 50, 0, 2, 0x10);
+        mmu.setByte(0xff49, 0x0c); // Color 1 -> black
+        Gpu gpu = buildGpu(mmu);
+        step(gpu, CYCLES_PER_FRAME);
+        gpu.getScreenBuffer().updateScreenBuffer();
+        assertEquals(BLACK, pixel(gpu.getScreenBuffer().getScreen().getPixels(), 0, 50));
+
+        mmu.setByte(0xff49, 0x08); // Color 1 -> dark gray
+        step(gpu, CYCLES_PER_FRAME);
+        gpu.getScreenBuffer().updateScreenBuffer();
+        assertEquals(DARK_GRAY, pixel(gpu.getScreenBuffer().getScreen().getPixels(), 0, 50));
+    }
+
+    @Test
+    public void test_frames_are_published_once_per_frame() {
+        Mmu mmu = buildMmu();
+        Gpu gpu = buildGpu(mmu);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+        step(gpu, CYCLES_PER_FRAME);
+        assertTrue(buffer.updateScreenBuffer());
+        long first = buffer.getScreen().getSequenceNumber();
+        step(gpu, CYCLES_PER_FRAME);
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(first + 1, buffer.getScreen().getSequenceNumber());
+    }
+
+    @Test
+    public void test_skipped_frames_keep_timing_but_are_not_published() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800, 1);
+        Gpu gpu = buildGpu(mmu);
+        gpu.setFrameSkip(1);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+
+        step(gpu, CYCLES_PER_FRAME);
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(BLACK, pixel(buffer.getScreen().getPixels(), 0, 0));
+
+        mmu.setByte(0x9800, 0);
+        int vblanks = 0;
+        for (int done = 0; done < CYCLES_PER_FRAME; done += 4) {
+            int lineBefore = mmu.getIo().getLcdCurrentLine();
+            gpu.stepAhead(4);
+            if (lineBefore != 143 && mmu.getIo().getLcdCurrentLine() == 143) {
+                vblanks++;
+            }
+        }
+        assertEquals(1, vblanks);
+        assertFalse(buffer.updateScreenBuffer());
+        assertEquals(BLACK, pixel(buffer.getScreen().getPixels(), 0, 0));
+
+        step(gpu, CYCLES_PER_FRAME);
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(WHITE, pixel(buffer.getScreen().getPixels(), 0, 0));
+    }
+
+    @Test
+    public void test_unchanged_lines_stay_correct_as_buffers_rotate() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800 + 32 * 10, 1);
+        Gpu gpu = buildGpu(mmu);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+        for (int frame = 0; frame < 6; frame++) {
+            if (frame == 2) {
+                mmu.setByte(0x9800 + 32 * 10, 0);
+            }
+            step(gpu, CYCLES_PER_FRAME);
+            assertTrue(buffer.updateScreenBuffer());
+            int expected = frame < 2 ? BLACK : WHITE;
+            assertEquals("Frame " + frame, expected, pixel(buffer.getScreen().getPixels(), 0, 80));
+        }
+    }
+
+    @Test
+    public void test_tile_data_change_redraws_line() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800 + 32 * 10, 1);
+        Gpu gpu = buildGpu(mmu);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+        for (int frame = 0; frame < 4; frame++) {
+            step(gpu, CYCLES_PER_FRAME);
+        }
+        fillTile(mmu, 1, 2);
+        step(gpu, CYCLES_PER_FRAME);
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(DARK_GRAY, pixel(buffer.getScreen().getPixels(), 0, 80));
+    }
+
+    @Test
+    public void test_line_fingerprints_only_change_with_inputs() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800 + 32 * 5, 1);
+        Gpu gpu = buildGpu(mmu);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+        step(gpu, CYCLES_PER_FRAME);
+        buffer.updateScreenBuffer();
+        long[] before = fingerprints(buffer.getScreen());
+
+        mmu.setByte(0x9800 + 32 * 5, 0);
+        step(gpu, CYCLES_PER_FRAME);
+        buffer.updateScreenBuffer();
+        long[] after = fingerprints(buffer.getScreen());
+        for (int line = 0; line < 100; line++) {
+            boolean inChangedTileRow = 40 <= line && line < 48;
+            assertEquals("Line " + line, !inChangedTileRow, before[line] == after[line]);
+        }
+    }
+
+    @Test
+    public void test_frames_are_drawn_on_render_executor() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800 + 32 * 10, 1);
+        Gpu gpu = buildGpu(mmu);
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        gpu.setRenderExecutor(tasks::add);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+
+        step(gpu, CYCLES_PER_FRAME);
+        assertFalse(buffer.updateScreenBuffer());
+        assertEquals(1, tasks.size());
+        tasks.remove().run();
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(BLACK, pixel(buffer.getScreen().getPixels(), 0, 80));
+    }
+
+    @Test
+    public void test_deferred_frame_shows_vram_as_captured() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800 + 32 * 10, 1);
+        Gpu gpu = buildGpu(mmu);
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        gpu.setRenderExecutor(tasks::add);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+
+        step(gpu, CYCLES_PER_FRAME);
+        fillTile(mmu, 1, 1);
+        mmu.setByte(0x9800 + 32 * 10, 0);
+        mmu.setByte(0xff47, 0x00);
+        tasks.remove().run();
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(BLACK, pixel(buffer.getScreen().getPixels(), 0, 80));
+    }
+
+    @Test
+    public void test_frame_completed_while_renderer_is_busy_is_dropped() {
+        Mmu mmu = buildMmu();
+        Gpu gpu = buildGpu(mmu);
+        Queue<Runnable> tasks = new ArrayDeque<>();
+        gpu.setRenderExecutor(tasks::add);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+
+        step(gpu, CYCLES_PER_FRAME);
+        step(gpu, CYCLES_PER_FRAME);
+        assertEquals(1, tasks.size());
+        tasks.remove().run();
+        step(gpu, CYCLES_PER_FRAME);
+        assertEquals(1, tasks.size());
+        tasks.remove().run();
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(2, buffer.getScreen().getSequenceNumber());
+    }
+
+    @Test
+    public void test_headless_gpu_keeps_lcd_timing() {
+        Mmu mmu = buildMmu();
+        Gpu gpu = buildGpu(mmu);
+        Mmu headlessMmu = buildMmu();
+        Gpu headlessGpu = buildGpu(headlessMmu);
+        headlessGpu.setHeadless(true);
+        for (int done = 0; done < 3 * CYCLES_PER_FRAME; done += 4) {
+            gpu.stepAhead(4);
+            headlessGpu.stepAhead(4);
+            assertEquals(mmu.readByte(0xff44), headlessMmu.readByte(0xff44));
+            assertEquals(mmu.readByte(0xff41), headlessMmu.readByte(0xff41));
+            assertEquals(mmu.readByte(0xff0f), headlessMmu.readByte(0xff0f));
+        }
+    }
+
+    @Test
+    public void test_headless_gpu_only_draws_requested_frames() {
+        Mmu mmu = buildMmu();
+        fillTile(mmu, 1, 3);
+        mmu.setByte(0x9800 + 32 * 10, 1);
+        Gpu gpu = buildGpu(mmu);
+        gpu.setHeadless(true);
+        ScreenBuffer buffer = gpu.getScreenBuffer();
+
+        step(gpu, 2 * CYCLES_PER_FRAME);
+        assertFalse(buffer.updateScreenBuffer());
+
+        gpu.requestFrame();
+        step(gpu, 2 * CYCLES_PER_FRAME);
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(BLACK, pixel(buffer.getScreen().getPixels(), 0, 80));
+
+        step(gpu, 2 * CYCLES_PER_FRAME);
+        assertFalse(buffer.updateScreenBuffer());
+    }
+
+    private static long[] fingerprints(ScreenBuffer.Frame frame) {
+        long[] result = new long[Gpu.DISPLAY_HEIGHT];
+        for (int line = 0; line < result.length; line++) {
+            result[line] = frame.getLineFingerprint(line);
+        }
+        return result;
+    }
+
+    private static Mmu buildMmu() {
+        Mmu mmu = Mmu.build(true);
+        mmu.setBiosEnabled(false);
+        mmu.setByte(0xff40, LCDC_DEFAULT);
+        mmu.setByte(0xff47, 0xe4); // Identity palettes
+        mmu.setByte(0xff48, 0xe4);
+        mmu.setByte(0xff49, 0xe4);
+        mmu.setByte(0xff4a, 0);
+        mmu.setByte(0xff4b, 7);
+        for (int sprite = 0; sprite < 40; sprite++) {
+            mmu.setByte(0xfe00 + sprite * 4, 0); // Off screen
+        }
+        return mmu;
+    }
+
+    static Gpu buildGpu(Mmu mmu) {
+        return new Gpu(mmu.getDirectMemoryAccess(),
+                       mmu.getIo(),
+                       mmu.getInterruptLine(),
+                       mmu.getGraphicsAccessController(),
+                       mmu.getOam(),
+                       mmu.getVram());
+    }
+
+    private static int[] renderFrame(Mmu mmu) {
+        Gpu gpu = buildGpu(mmu);
+        step(gpu, CYCLES_PER_FRAME);
+        assertTrue(gpu.getScreenBuffer().updateScreenBuffer());
+        return gpu.getScreenBuffer().getScreen().getPixels();
+    }
+
+    private static void step(Gpu gpu, int cycles) {
+        for (int done = 0; done < cycles; done += 4) {
+            gpu.stepAhead(4);
+        }
+    }
+
+    private static int pixel(int[] frame, int x, int y) {
+        return frame[y * Gpu.DISPLAY_WIDTH + x];
+    }
+
+    private static void fillTile(Mmu mmu, int tileIndex, int colorId) {
+        int low = (colorId & 1) > 0 ? 0xff : 0x00;
+        int high = (colorId & 2) > 0 ? 0xff : 0x00;
+        for (int row = 0; row < 8; row++) {
+            mmu.setByte(0x8000 + tileIndex * 16 + row * 2, low);
+            mmu.setByte(0x8000 + tileIndex * 16 + row * 2 + 1, high);
+        }
+    }
+
+    private static void fillAllBackground(Mmu mmu, int tileIndex) {
+        for (int idx = 0; idx < 32 * 32; idx++) {
+            mmu.setByte(0x9800 + idx, tileIndex);
+        }
+    }
+
+    private static void setSprite(Mmu mmu, int spriteIndex, int y, int x, int pattern, int flags) {
+        int address = 0xfe00 + spriteIndex * 4;
+        mmu.setByte(address, y + 16);
+        mmu.setByte(address + 1, x + 8);
+        mmu.setByte(address + 2, pattern);
+        mmu.setByte(address + 3, flags);
+    }
+}
@@ -0,0 +1,62 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestScreenBuffer {
+    @Test
+    public void test_no_new_frame_before_first_publish() {
+        ScreenBuffer buffer = new ScreenBuffer(4, 2);
+        assertFalse(buffer.updateScreenBuffer());
+        assertEquals(0, buffer.getScreen().getSequenceNumber());
+    }
+
+    @Test
+    public void test_published_frame_reaches_screen_once() {
+        ScreenBuffer buffer = new ScreenBuffer(4, 2);
+        buffer.getScratch()[5] = 0xff123456;
+        buffer.swapScratchBuffers(1000);
+
+        assertTrue(buffer.updateScreenBuffer());
+        ScreenBuffer.Frame frame = buffer.getScreen();
+        assertEquals(0xff123456, frame.getPixels()[5]);
+        assertEquals(1, frame.getSequenceNumber());
+        assertEquals(1000, frame.getCycleTimestamp());
+
+        assertFalse(buffer.updateScreenBuffer());
+        assertSame(frame, buffer.getScreen());
+    }
+
+    @Test
+    public void test_unconsumed_frames_are_replaced_by_newer_ones() {
+        ScreenBuffer buffer = new ScreenBuffer(4, 2);
+        buffer.getScratch()[0] = 1;
+        buffer.swapScratchBuffers(10);
+        buffer.getScratch()[0] = 2;
+        buffer.swapScratchBuffers(20);
+        buffer.getScratch()[0] = 3;
+        buffer.swapScratchBuffers(30);
+
+        assertTrue(buffer.updateScreenBuffer());
+        assertEquals(3, buffer.getScreen().getPixels()[0]);
+        assertEquals(3, buffer.getScreen().getSequenceNumber());
+        assertEquals(30, buffer.getScreen().getCycleTimestamp());
+    }
+
+    @Test
+    public void test_producer_never_draws_into_screen_frame() {
+        ScreenBuffer buffer = new ScreenBuffer(4, 2);
+        for (int idx = 0; idx < 10; idx++) {
+            buffer.swapScratchBuffers(idx);
+            if (idx % 3 == 0) {
+                buffer.updateScreenBuffer();
+            }
+            assertNotSame(buffer.getScreen().getPixels(), buffer.getScratch());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestSpriteMap {
+    @Test
+    public void test_no_sprites_on_empty_row() {
+        Mmu mmu = buildMmu();
+        SpriteMap map = buildMap(mmu);
+        assertEquals(0, map.getSpritesForRow(50, new Sprite[SpriteMap.MAX_SPRITES_PER_LINE]));
+    }
+
+    @Test
+    public void test_sprite_covers_eight_rows() {
+        Mmu mmu = buildMmu();
+        setSprite(mmu, 5, 20, 30);
+        SpriteMap map = buildMap(mmu);
+        Sprite[] dest = new Sprite[SpriteMap.MAX_SPRITES_PER_LINE];
+        assertEquals(0, map.getSpritesForRow(19, dest));
+        assertEquals(1, map.getSpritesForRow(20, dest));
+        assertEquals(5, dest[0].getAttributeIndex());
+        assertEquals(1, map.getSpritesForRow(27, dest));
+        assertEquals(0, map.getSpritesForRow(28, dest));
+    }
+
+    @Test
+    public void test_tall_sprites_cover_sixteen_rows() {
+        Mmu mmu = buildMmu();
+        setSprite(mmu, 5, 20, 30);
+        SpriteMap map = buildMap(mmu);
+        Sprite[] dest = new Sprite[SpriteMap.MAX_SPRITES_PER_LINE];
+        mmu.setByte(0xff40, 0x04);
+        assertEquals(1, map.getSpritesForRow(35, dest));
+        assertEquals(0, map.getSpritesForRow(36, dest));
+        mmu.setByte(0xff40, 0x00);
+        assertEquals(0, map.getSpritesForRow(35, dest));
+    }
+
+    @Test
+    public void test_moved_sprite_leaves_old_rows() {
+        Mmu mmu = buildMmu();
+        setSprite(mmu, 0, 20, 30);
+        SpriteMap map = buildMap(mmu);
+        Sprite[] dest = new Sprite[SpriteMap.MAX_SPRITES_PER_LINE];
+        setSprite(mmu, 0, 100, 30);
+        assertEquals(0, map.getSpritesForRow(20, dest));
+        assertEquals(1, map.getSpritesForRow(100, dest));
+        assertEquals(100, dest[0].getAttributes().getY());
+    }
+
+    @Test
+    public void test_sprites_ordered_by_x_then_index() {
+        Mmu mmu = buildMmu();
+        setSprite(mmu, 0, 10, 50);
+        setSprite(mmu, 1, 10, 20);
+        setSprite(mmu, 2, 10, 50);
+        setSprite(mmu, 3, 10, 5);
+        SpriteMap map = buildMap(mmu);
+        Sprite[] dest = new Sprite[SpriteMap.MAX_SPRITES_PER_LINE];
+        assertEquals(4, map.getSpritesForRow(10, dest));
+        assertEquals(3, dest[0].getAttributeIndex());
+        assertEquals(1, dest[1].getAttributeIndex());
+        assertEquals(0, dest[2].getAttributeIndex());
+        assertEquals(2, dest[3].getAttributeIndex());
+    }
+
+    @Test
+    public void test_only_ten_highest_priority_sprites_are_returned() {
+        Mmu mmu = buildMmu();
+        for (int idx = 0; idx < 20; idx++) {
+            setSprite(mmu, idx, 10, 100 - idx);
+        }
+        SpriteMap map = buildMap(mmu);
+        Sprite[] dest = new Sprite[SpriteMap.MAX_SPRITES_PER_LINE];
+        assertEquals(10, map.getSpritesForRow(10, dest));
+        for (int idx = 0; idx < 10; idx++) {
+            assertEquals(19 - idx, dest[idx].getAttributeIndex());
+        }
+    }
+
+    private static Mmu buildMmu() {
+        Mmu mmu = Mmu.build(true);
+        mmu.setBiosEnabled(false);
+        mmu.setByte(0xff48, 0xe4);
+        for (int sprite = 0; sprite < 40; sprite++) {
+            mmu.setByte(0xfe00 + sprite * 4, 0); // Off screen
+        }
+        return mmu;
+    }
+
+    private static SpriteMap buildMap(Mmu mmu) {
+        SpriteMap map = new SpriteMap(mmu.getIo(), mmu.getOam());
+        map.init();
+        return map;
+    }
+
+    private static void setSprite(Mmu mmu, int spriteIndex, int y, int x) {
+        mmu.setByte(0xfe00 + spriteIndex * 4, y + 16);
+        mmu.setByte(0xfe00 + spriteIndex * 4 + 1, x + 8);
+    }
+}
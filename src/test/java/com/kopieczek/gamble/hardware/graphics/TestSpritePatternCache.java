@@ -0,0 +1,39 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestSpritePatternCache {
+    @Test
+    public void test_all_four_orientations() {
+        Mmu mmu = Mmu.build(true);
+        SpritePatternCache cache = new SpritePatternCache(mmu.getVram());
+        mmu.setByte(0x8010, 0x80); // Pattern 1, row 0: leftmost pixel is color 1
+        mmu.setByte(0x801f, 0x01); // Pattern 1, row 7: rightmost pixel is color 2
+        assertEquals(1, colorAt(cache, 1, false, false, 0, 0));
+        assertEquals(2, colorAt(cache, 1, false, false, 7, 7));
+        assertEquals(1, colorAt(cache, 1, true, false, 0, 7));
+        assertEquals(2, colorAt(cache, 1, true, false, 7, 0));
+        assertEquals(1, colorAt(cache, 1, false, true, 7, 0));
+        assertEquals(2, colorAt(cache, 1, false, true, 0, 7));
+        assertEquals(1, colorAt(cache, 1, true, true, 7, 7));
+        assertEquals(2, colorAt(cache, 1, true, true, 0, 0));
+    }
+
+    @Test
+    public void test_write_to_pattern_invalidates_all_orientations() {
+        Mmu mmu = Mmu.build(true);
+        SpritePatternCache cache = new SpritePatternCache(mmu.getVram());
+        assertEquals(0, colorAt(cache, 200, false, false, 2, 0));
+        assertEquals(0, colorAt(cache, 200, true, true, 5, 7));
+        mmu.setByte(0x8000 + 200 * 16 + 4, 0x80);
+        assertEquals(1, colorAt(cache, 200, false, false, 2, 0));
+        assertEquals(1, colorAt(cache, 200, true, true, 5, 7));
+    }
+
+    private static int colorAt(SpritePatternCache cache, int pattern, boolean xFlip, boolean yFlip, int row, int col) {
+        return cache.snapshotColorIds()[SpritePatternCache.rowOffset(pattern, xFlip, yFlip, row) + col];
+    }
+}
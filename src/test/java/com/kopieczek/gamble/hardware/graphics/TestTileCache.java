@@ -0,0 +1,71 @@
+package com.kopieczek.gamble.hardware.graphics;
+
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestTileCache {
+    @Test
+    public void test_decodes_row_bit_planes() {
+        Mmu mmu = Mmu.build(true);
+        TileCache cache = new TileCache(mmu.getVram());
+        mmu.setByte(0x8000, 0b10100101);  // Low bits of row 0
+        mmu.setByte(0x8001, 0b11000011);  // High bits of row 0
+        int[] expected = {3, 2, 1, 0, 0, 1, 2, 3};
+        for (int x = 0; x < 8; x++) {
+            assertEquals(expected[x], colorAt(cache, 0, x, 0));
+        }
+    }
+
+    @Test
+    public void test_last_tile_is_in_upper_tile_block() {
+        Mmu mmu = Mmu.build(true);
+        TileCache cache = new TileCache(mmu.getVram());
+        mmu.setByte(0x97fe, 0xff);
+        mmu.setByte(0x97ff, 0xff);
+        assertEquals(3, colorAt(cache, 383, 4, 7));
+        assertEquals(0, colorAt(cache, 383, 4, 6));
+    }
+
+    @Test
+    public void test_write_to_vram_invalidates_decoded_tile() {
+        Mmu mmu = Mmu.build(true);
+        TileCache cache = new TileCache(mmu.getVram());
+        int tileStart = 0x8000 + 300 * 16;
+        assertEquals(0, colorAt(cache, 300, 0, 3));
+        mmu.setByte(tileStart + 7, 0x80);
+        assertEquals(2, colorAt(cache, 300, 0, 3));
+        mmu.setByte(tileStart + 7, 0x00);
+        assertEquals(0, colorAt(cache, 300, 0, 3));
+    }
+
+    @Test
+    public void test_block_write_invalidates_decoded_tiles() {
+        Mmu mmu = Mmu.build(true);
+        TileCache cache = new TileCache(mmu.getVram());
+        assertEquals(0, colorAt(cache, 1, 0, 0));
+        assertEquals(0, colorAt(cache, 2, 0, 0));
+        int[] data = new int[32];
+        data[0] = 0x80;
+        data[16] = 0x80;
+        mmu.writeBlock(0x8010, data, 0, data.length);
+        assertEquals(1, colorAt(cache, 1, 0, 0));
+        assertEquals(1, colorAt(cache, 2, 0, 0));
+    }
+
+    @Test
+    public void test_snapshot_is_unchanged_by_later_writes() {
+        Mmu mmu = Mmu.build(true);
+        TileCache cache = new TileCache(mmu.getVram());
+        mmu.setByte(0x8000, 0x80);
+        byte[] snapshot = cache.snapshotColorIds();
+        mmu.setByte(0x8000, 0x00);
+        assertEquals(0, colorAt(cache, 0, 0, 0));
+        assertEquals(1, snapshot[TileCache.rowOffset(0, 0)]);
+    }
+
+    private static int colorAt(TileCache cache, int tileIndex, int x, int y) {
+        return cache.snapshotColorIds()[TileCache.rowOffset(tileIndex, y) + x];
+    }
+}
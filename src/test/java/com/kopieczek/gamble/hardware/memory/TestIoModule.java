@@ -3255,6 +3255,57 @@ public class TestIoModule {
         }
     }
 
+    @Test
+    public void test_lcd_registers_track_lcd_control() {
+        doRangeTest(0xff40, mmu -> {
+            Io io = mmu.getIo();
+            LcdRegisters lcd = io.getLcdRegisters();
+            assertEquals(io.isLcdDisplayEnabled(), lcd.isLcdDisplayEnabled());
+            assertEquals(io.getWindowTileMapStartAddress(), lcd.getWindowTileMapStartAddress());
+            assertEquals(io.isWindowDisplayEnabled(), lcd.isWindowDisplayEnabled());
+            assertEquals(io.getTileDataStartAddress(), lcd.getTileDataStartAddress());
+            assertEquals(io.areTileMapEntriesSigned(), lcd.areTileMapEntriesSigned());
+            assertEquals(io.getBackgroundTileMapStartAddress(), lcd.getBackgroundTileMapStartAddress());
+            assertEquals(io.getSpriteHeight(), lcd.getSpriteHeight());
+            assertEquals(io.isSpriteDisplayEnabled(), lcd.isSpriteDisplayEnabled());
+            assertEquals(io.isBackgroundDisplayEnabled(), lcd.isBackgroundDisplayEnabled());
+        });
+    }
+
+    @Test
+    public void test_lcd_registers_track_scroll_and_window_position() {
+        doRangeTest(0xff42, mmu -> assertEquals(mmu.getIo().getScrollY(), mmu.getIo().getLcdRegisters().getScrollY()));
+        doRangeTest(0xff43, mmu -> assertEquals(mmu.getIo().getScrollX(), mmu.getIo().getLcdRegisters().getScrollX()));
+        doRangeTest(0xff4a, mmu -> assertEquals(mmu.getIo().getWindowY(), mmu.getIo().getLcdRegisters().getWindowY()));
+        doRangeTest(0xff4b, mmu -> assertEquals(mmu.getIo().getWindowX(), mmu.getIo().getLcdRegisters().getWindowX()));
+    }
+
+    @Test
+    public void test_lcd_registers_track_background_palette() {
+        doRangeTest(0xff47, mmu -> {
+            for (int colorId = 0; colorId < 4; colorId++) {
+                assertEquals(mmu.getIo().getShadeForBackgroundColor(colorId).getRGB(),
+                             mmu.getIo().getLcdRegisters().getBackgroundShades()[colorId]);
+            }
+        });
+    }
+
+    @Test
+    public void test_lcd_registers_track_sprite_palettes() {
+        doRangeTest(0xff48, mmu -> {
+            for (int colorId = 0; colorId < 4; colorId++) {
+                assertEquals(mmu.getIo().loadPalette0()[colorId].getRGB(),
+                             mmu.getIo().getLcdRegisters().getSpritePalette0()[colorId]);
+            }
+        });
+        doRangeTest(0xff49, mmu -> {
+            for (int colorId = 0; colorId < 4; colorId++) {
+                assertEquals(mmu.getIo().loadPalette1()[colorId].getRGB(),
+                             mmu.getIo().getLcdRegisters().getSpritePalette1()[colorId]);
+            }
+        });
+    }
+
     private static void assertMemoryValues(Mmu mmu, int startAddr, int length,
             Function<Integer, Integer> getExpectedValue) {
         for (int idx = 0; idx < length; idx++) {
@@ -1,10 +1,20 @@
 package com.kopieczek.gamble.hardware.memory;
 
+import com.kopieczek.gamble.hardware.cpu.Interrupt;
 import org.junit.Test;
 
 import javax.crypto.spec.OAEPParameterSpec;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TestMmu {
     private static final int BIOS_SIZE = 0x100;
@@ -658,6 +668,67 @@ public class TestMmu {
         testMmuWrite(mmu, zram, ZRAM_START);
     }
 
+    @Test
+    public void test_writes_mark_global_pages_dirty() {
+        Mmu mmu = Mmu.build(true);
+        mmu.clearDirtyPages();
+        mmu.setByte(0x8123, 0x01);
+        mmu.setByte(0xc456, 0x01);
+        mmu.setByte(0xff90, 0x01);
+        BitSet expected = new BitSet();
+        expected.set(0x81);
+        expected.set(0xc4);
+        expected.set(0xff);
+        assertEquals(expected, mmu.getDirtyPages());
+    }
+
+    @Test
+    public void test_clear_dirty_pages() {
+        Mmu mmu = Mmu.build(true);
+        mmu.setByte(0xc456, 0x01);
+        mmu.clearDirtyPages();
+        assertTrue(mmu.getDirtyPages().isEmpty());
+    }
+
+    @Test
+    public void test_raised_interrupt_is_visible_at_0xff0f() {
+        Mmu mmu = Mmu.build(true);
+        mmu.getInterruptLine().setInterrupt(Interrupt.TIMER);
+        assertEquals(0x04, mmu.readByte(0xff0f));
+    }
+
+    @Test
+    public void test_write_to_0xff0f_sets_interrupt_flags() {
+        Mmu mmu = Mmu.build(true);
+        mmu.setByte(0xff0f, 0x11);
+        assertTrue(mmu.getInterruptLine().checkInterrupt(Interrupt.V_BLANK));
+        assertTrue(mmu.getInterruptLine().checkInterrupt(Interrupt.JOYPAD));
+        assertFalse(mmu.getInterruptLine().checkInterrupt(Interrupt.TIMER));
+    }
+
+    @Test
+    public void test_write_to_0xffff_enables_interrupts() {
+        Mmu mmu = Mmu.build(true);
+        mmu.setByte(0xffff, 0x02);
+        assertTrue(mmu.getInterruptLine().isInterruptEnabled(Interrupt.LCD_STAT));
+        assertFalse(mmu.getInterruptLine().isInterruptEnabled(Interrupt.V_BLANK));
+        assertEquals(0x02, mmu.readByte(0xffff));
+    }
+
+    @Test
+    public void test_interrupt_is_pending_only_when_raised_and_enabled() {
+        Mmu mmu = Mmu.build(true);
+        InterruptLine interrupts = mmu.getInterruptLine();
+        interrupts.setInterrupt(Interrupt.SERIAL);
+        assertFalse(interrupts.isInterruptPending());
+        mmu.setByte(0xffff, 0x01);
+        assertFalse(interrupts.isInterruptPending());
+        mmu.setByte(0xffff, 0x08);
+        assertTrue(interrupts.isInterruptPending());
+        interrupts.resetInterrupt(Interrupt.SERIAL);
+        assertFalse(interrupts.isInterruptPending());
+    }
+
     private void testMmuRead(Mmu mmu, MemoryModule module, int addressOffset, int maxSize) {
         int start = 0;
         int mid = module.getSizeInBytes() / 2;
@@ -750,4 +821,81 @@ public class TestMmu {
             return size;
         }
     }
+
+    @Test
+    public void test_block_access_spans_module_boundaries() {
+        Mmu mmu = Mmu.build(true);
+        int[] data = {0x01, 0x02, 0x03, 0x04};
+        mmu.writeBlock(0xdffe, data, 0, 4);
+        assertEquals(0x02, mmu.readByte(0xdfff));
+        assertEquals(0x03, mmu.readByte(0xc000)); // Shadow RAM
+
+        int[] result = new int[4];
+        mmu.readBlock(0xdffe, result, 0, 4);
+        assertArrayEquals(data, result);
+    }
+
+    @Test
+    public void test_block_access_includes_interrupt_flags() {
+        Mmu mmu = Mmu.build(true);
+        mmu.writeBlock(0xff0e, new int[] {0x00, 0x05, 0x00}, 0, 3);
+        assertTrue(mmu.getInterruptLine().checkInterrupt(Interrupt.V_BLANK));
+        assertTrue(mmu.getInterruptLine().checkInterrupt(Interrupt.TIMER));
+    }
+
+    @Test
+    public void test_dma_copies_one_byte_per_cycle_after_setup() {
+        Mmu mmu = Mmu.build(true);
+        for (int idx = 0; idx < OAM_SIZE; idx++) {
+            mmu.setByte(0xc100 + idx, idx + 1);
+        }
+
+        mmu.setByte(0xff46, 0xc1);
+        mmu.stepAhead(2);
+        assertEquals(0x00, mmu.readByte(0xfe00));
+        mmu.stepAhead(10);
+        assertEquals(0x0a, mmu.readByte(0xfe09));
+        assertEquals(0x00, mmu.readByte(0xfe0a));
+        mmu.stepAhead(1000);
+        for (int idx = 0; idx < OAM_SIZE; idx++) {
+            assertEquals(idx + 1, mmu.readByte(0xfe00 + idx));
+        }
+    }
+
+    @Test
+    public void test_io_access_listener_runs_on_cpu_reads_in_range() {
+        Mmu mmu = Mmu.build(true);
+        AtomicInteger calls = new AtomicInteger(0);
+        mmu.addIoAccessListener(0xff04, 0xff07, calls::incrementAndGet);
+        Memory cpuMemory = mmu.getShieldedMemoryAccess();
+        cpuMemory.readByte(0xff04);
+        cpuMemory.readByte(0xff07);
+        cpuMemory.readByte(0xff08);
+        cpuMemory.readByte(0xc000);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void test_io_access_listener_runs_before_and_after_cpu_writes() {
+        Mmu mmu = Mmu.build(true);
+        List<Integer> seenValues = new ArrayList<>();
+        mmu.addIoAccessListener(0xff42, 0xff42, () -> seenValues.add(mmu.readByte(0xff42)));
+        mmu.getShieldedMemoryAccess().setByte(0xff42, 0x12);
+        assertEquals(Arrays.asList(0x00, 0x12), seenValues);
+    }
+
+    @Test
+    public void test_io_access_listener_ignores_direct_access() {
+        Mmu mmu = Mmu.build(true);
+        AtomicInteger calls = new AtomicInteger(0);
+        mmu.addIoAccessListener(0xff40, 0xff4b, calls::incrementAndGet);
+        mmu.getDirectMemoryAccess().setByte(0xff42, 0x12);
+        mmu.getDirectMemoryAccess().readByte(0xff42);
+        assertEquals(0, calls.get());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test_io_access_listener_must_be_in_io_area() {
+        Mmu.build(true).addIoAccessListener(0xff70, 0xff80, () -> {});
+    }
 }
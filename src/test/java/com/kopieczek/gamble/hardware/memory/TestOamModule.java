@@ -3,6 +3,7 @@ package com.kopieczek.gamble.hardware.memory;
 import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -135,4 +136,18 @@ public class TestOamModule {
             assertArrayEquals(attributes, oam.getAttributeBytes(spriteIndex));
         });
     }
+
+    @Test
+    public void test_block_write_fires_once_per_changed_sprite() {
+        List<Integer> changed = new ArrayList<>();
+        OamModule oam = new OamModule();
+        oam.register(new SpriteChangeAdapter() {
+            @Override
+            public void onSpriteAttributesModified(int spriteIndex) {
+                changed.add(spriteIndex);
+            }
+        });
+        oam.writeBlock(0x00, new int[] {0x00, 0x00, 0x00, 0x00, 0x01, 0x02, 0x00, 0x00, 0x00, 0x03}, 0, 10);
+        assertEquals(ImmutableList.of(1, 2), changed);
+    }
 }
@@ -2,7 +2,13 @@ package com.kopieczek.gamble.hardware.memory;
 
 import org.junit.Test;
 
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TestRamModule {
     @Test
@@ -104,4 +110,100 @@ public class TestRamModule {
         MemoryModule mm = new RamModule(0x1234);
         assertEquals(0x1234, mm.getSizeInBytes());
     }
+
+    @Test
+    public void test_new_module_has_no_dirty_pages() {
+        RamModule mm = new RamModule();
+        assertTrue(mm.getDirtyPages().isEmpty());
+    }
+
+    @Test
+    public void test_write_marks_only_its_page_dirty() {
+        RamModule mm = new RamModule();
+        mm.setByte(0x1234, 0x56);
+        BitSet expected = new BitSet();
+        expected.set(0x12);
+        assertEquals(expected, mm.getDirtyPages());
+        assertTrue(mm.isPageDirty(0x12));
+        assertFalse(mm.isPageDirty(0x13));
+    }
+
+    @Test
+    public void test_writes_across_64_page_boundary_are_tracked() {
+        RamModule mm = new RamModule();
+        mm.setByte(0x3fff, 0x01);
+        mm.setByte(0x4000, 0x01);
+        mm.setByte(0xfffe, 0x01);
+        BitSet expected = new BitSet();
+        expected.set(0x3f);
+        expected.set(0x40);
+        expected.set(0xff);
+        assertEquals(expected, mm.getDirtyPages());
+    }
+
+    @Test
+    public void test_clear_dirty_pages() {
+        RamModule mm = new RamModule();
+        mm.setByte(0x0100, 0x01);
+        mm.clearDirtyPages();
+        assertTrue(mm.getDirtyPages().isEmpty());
+    }
+
+    @Test
+    public void test_import_marks_all_pages_dirty() {
+        RamModule mm = new RamModule(0x0300);
+        mm.importData(new byte[0x0300 * 4]);
+        assertEquals(3, mm.getDirtyPages().cardinality());
+    }
+
+    @Test
+    public void test_write_block_then_read_block() {
+        RamModule mm = new RamModule(0x0200);
+        mm.writeBlock(0x00f0, new int[] {0x00, 0x11, 0x22, 0x33, 0x44}, 1, 3);
+        int[] result = new int[5];
+        mm.readBlock(0x00ef, result, 0, 5);
+        assertArrayEquals(new int[] {0x00, 0x11, 0x22, 0x33, 0x00}, result);
+    }
+
+    @Test
+    public void test_write_block_marks_every_spanned_page_dirty() {
+        RamModule mm = new RamModule(0x0400);
+        mm.writeBlock(0x00ff, new int[0x102], 0, 0x102);
+        BitSet expected = new BitSet();
+        expected.set(0, 3);
+        assertEquals(expected, mm.getDirtyPages());
+    }
+
+    @Test
+    public void test_write_block_honours_filters_and_triggers() {
+        RamModule mm = new RamModule(0x0100);
+        AtomicInteger triggerCount = new AtomicInteger(0);
+        mm.addFilter(0x0011, value -> value & 0x0f);
+        mm.addTrigger(0x0012, triggerCount::incrementAndGet);
+        mm.writeBlock(0x0010, new int[] {0xff, 0xff, 0xff}, 0, 3);
+        assertEquals(0xff, mm.readByte(0x0010));
+        assertEquals(0x0f, mm.readByte(0x0011));
+        assertEquals(0xff, mm.readByte(0x0012));
+        assertEquals(1, triggerCount.get());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test_write_block_rejects_oversized_values() {
+        RamModule mm = new RamModule(0x0100);
+        mm.writeBlock(0x0000, new int[] {0x01, 0x100}, 0, 2);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test_cannot_read_block_past_end_of_memory() {
+        RamModule mm = new RamModule(0x0100);
+        mm.readBlock(0x00ff, new int[2], 0, 2);
+    }
+
+    @Test
+    public void test_read_word_is_little_endian() {
+        RamModule mm = new RamModule(0x0100);
+        mm.setByte(0x0020, 0x34);
+        mm.setByte(0x0021, 0x12);
+        assertEquals(0x1234, mm.readWord(0x0020));
+    }
 }
@@ -4,10 +4,12 @@ import com.kopieczek.gamble.hardware.memory.MemoryModule;
 import com.kopieczek.gamble.hardware.memory.Mmu;
 import com.kopieczek.gamble.hardware.memory.RamModule;
 
+import java.util.BitSet;
+
 public class RamBackedTestCartridge implements Cartridge {
     private final MemoryModule rom0 = new RamModule(Mmu.ROM_0_SIZE);
     private final MemoryModule rom1 = new RamModule(Mmu.ROM_1_SIZE);
-    private final MemoryModule ram  = new RamModule(Mmu.EXT_RAM_SIZE);
+    private final RamModule ram  = new RamModule(Mmu.EXT_RAM_SIZE);
 
     @Override
     public MemoryModule getRom0() {
@@ -33,4 +35,14 @@ public class RamBackedTestCartridge implements Cartridge {
     public void importRamData(byte[] data) {
         throw new IllegalArgumentException("Not supported on this test class");
     }
+
+    @Override
+    public BitSet getDirtyRamPages() {
+        return ram.getDirtyPages();
+    }
+
+    @Override
+    public void clearDirtyRamPages() {
+        ram.clearDirtyPages();
+    }
 }
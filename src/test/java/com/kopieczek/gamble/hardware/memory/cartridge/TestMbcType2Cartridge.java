@@ -0,0 +1,121 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestMbcType2Cartridge {
+    private static final int NUM_ROM_BANKS = 16;
+
+    @Test
+    public void test_loader_builds_mbc2_for_types_5_and_6() {
+        assertTrue(CartridgeLoader.loadFrom(buildRom(0x05)) instanceof MbcType2Cartridge);
+        assertTrue(CartridgeLoader.loadFrom(buildRom(0x06)) instanceof MbcType2Cartridge);
+    }
+
+    @Test
+    public void test_rom_bank_selected_when_address_bit_8_is_set() {
+        Mmu mmu = getMmuForCartridge(buildCartridge());
+        mmu.setByte(0x2100, 0x07);
+        assertEquals(7, mmu.readByte(0x4000));
+        mmu.setByte(0x0100, 0x0c);
+        assertEquals(12, mmu.readByte(0x4000));
+    }
+
+    @Test
+    public void test_rom_bank_write_without_bit_8_is_ignored() {
+        Mmu mmu = getMmuForCartridge(buildCartridge());
+        mmu.setByte(0x2000, 0x07);
+        assertEquals(1, mmu.readByte(0x4000));
+    }
+
+    @Test
+    public void test_bank_0_request_yields_bank_1() {
+        Mmu mmu = getMmuForCartridge(buildCartridge());
+        mmu.setByte(0x2100, 0x00);
+        assertEquals(1, mmu.readByte(0x4000));
+    }
+
+    @Test
+    public void test_ram_holds_low_nibble_and_reads_upper_nibble_as_ones() {
+        Mmu mmu = getMmuForCartridge(buildCartridge());
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0xa000, 0x5c);
+        mmu.setByte(0xa001, 0x03);
+        assertEquals(0xfc, mmu.readByte(0xa000));
+        assertEquals(0xf3, mmu.readByte(0xa001));
+    }
+
+    @Test
+    public void test_ram_is_mirrored_every_512_bytes() {
+        Mmu mmu = getMmuForCartridge(buildCartridge());
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0xa005, 0x09);
+        assertEquals(0xf9, mmu.readByte(0xa205));
+        assertEquals(0xf9, mmu.readByte(0xbe05));
+    }
+
+    @Test
+    public void test_ram_is_disabled_by_default() {
+        Mmu mmu = getMmuForCartridge(buildCartridge());
+        mmu.setByte(0xa000, 0x01);
+        assertEquals(0xff, mmu.readByte(0xa000));
+        mmu.setByte(0x0000, 0x0a);
+        assertEquals(0xf0, mmu.readByte(0xa000));
+    }
+
+    @Test
+    public void test_ram_exports_as_packed_nibbles_and_round_trips() {
+        MbcType2Cartridge cartridge = buildCartridge();
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0xa010, 0x0a);
+        mmu.setByte(0xa011, 0x0b);
+        byte[] exported = cartridge.exportRamData();
+        assertEquals(256, exported.length);
+        assertEquals((byte) 0xba, exported[0x08]);
+
+        MbcType2Cartridge other = buildCartridge();
+        other.importRamData(exported);
+        assertArrayEquals(exported, other.exportRamData());
+    }
+
+    @Test
+    public void test_dirty_pages() {
+        MbcType2Cartridge cartridge = buildCartridge();
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0xa1ff, 0x01);
+        BitSet expected = new BitSet();
+        expected.set(1);
+        assertEquals(expected, cartridge.getDirtyRamPages());
+        cartridge.clearDirtyRamPages();
+        assertTrue(cartridge.getDirtyRamPages().isEmpty());
+    }
+
+    private static MbcType2Cartridge buildCartridge() {
+        return new MbcType2Cartridge(buildRom(0x06));
+    }
+
+    private static Mmu getMmuForCartridge(Cartridge cartridge) {
+        Mmu mmu = Mmu.build(true);
+        mmu.setBiosEnabled(false);
+        mmu.loadCartridge(cartridge);
+        return mmu;
+    }
+
+    // Each bank starts with its own bank number.
+    private static RomImage buildRom(int type) {
+        byte[] data = new byte[NUM_ROM_BANKS * Mmu.ROM_1_SIZE];
+        for (int bank = 0; bank < NUM_ROM_BANKS; bank++) {
+            data[bank * Mmu.ROM_1_SIZE] = (byte) bank;
+        }
+        data[0x0147] = (byte) type;
+        return RomImage.wrap(data);
+    }
+}
@@ -5,9 +5,11 @@ import org.junit.Test;
 import sun.misc.IOUtils;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
@@ -182,6 +184,19 @@ public class TestMbcType3Cartridge {
         }
     }
 
+    @Test
+    public void test_cartridges_sharing_a_rom_image_bank_independently() {
+        RomImage image = RomImage.fromUnsigned(cartridge1);
+        MbcType3Cartridge cartridgeA = new MbcType3Cartridge(image);
+        MbcType3Cartridge cartridgeB = new MbcType3Cartridge(image);
+        long rom2Sig = getDigest(new RomModule(Arrays.copyOfRange(cartridge1, 0x8000, 0xc000)));
+        long rom84Sig = getDigest(new RomModule(Arrays.copyOfRange(cartridge1, 0x150000, 0x154000)));
+        getMmuForCartridge(cartridgeA).setByte(0x2000, 2);
+        getMmuForCartridge(cartridgeB).setByte(0x2000, 84);
+        assertEquals(rom2Sig, getDigest(cartridgeA.getRom1()));
+        assertEquals(rom84Sig, getDigest(cartridgeB.getRom1()));
+    }
+
     @Test
     public void test_writing_to_0x1fff_does_not_modify_rom_bank() {
         MbcType3Cartridge cartridge = buildTestCartridge(cartridge1);
@@ -539,13 +554,38 @@ public class TestMbcType3Cartridge {
         }
     }
 
+    @Test
+    public void test_ram_writes_mark_pages_dirty_in_their_bank() {
+        MbcType3Cartridge cartridge = buildTestCartridge(cartridge1);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a); // Enable RAM
+        mmu.setByte(0x4000, 0x03); // Select RAM bank 3
+        mmu.setByte(0xa123, 0x42);
+        BitSet expected = new BitSet();
+        expected.set(3 * 0x20 + 0x01);
+        assertEquals(expected, cartridge.getDirtyRamPages());
+        cartridge.clearDirtyRamPages();
+        assertTrue(cartridge.getDirtyRamPages().isEmpty());
+    }
+
+    @Test
+    public void test_clock_writes_mark_cartridge_dirty() {
+        MbcType3Cartridge cartridge = buildTestCartridge(cartridge1);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a); // Enable RAM and clock
+        mmu.setByte(0x4000, 0x08); // Select the seconds register
+        mmu.setByte(0xa000, 30);
+        assertFalse(cartridge.getDirtyRamPages().isEmpty());
+        cartridge.clearDirtyRamPages();
+        assertTrue(cartridge.getDirtyRamPages().isEmpty());
+    }
+
     private static int[] buildTestData(Random random) {
         return IntStream.range(0, CARTRIDGE_SIZE).map(idx -> random.nextInt(256)).toArray();
     }
 
     private static MbcType3Cartridge buildTestCartridge(int[] data) {
-        int[] dataCopy = Arrays.copyOf(data, data.length);
-        return new MbcType3Cartridge(dataCopy);
+        return new MbcType3Cartridge(RomImage.fromUnsigned(data));
     }
 
     private static long getDigest(MemoryModule memory) {
@@ -572,4 +612,50 @@ public class TestMbcType3Cartridge {
             module.setByte(addr, random.nextInt(256));
         }
     }
+
+    @Test
+    public void test_rtc_register_is_read_through_ram_area_after_latch() {
+        AtomicLong now = new AtomicLong(0);
+        MbcType3Cartridge cartridge = new MbcType3Cartridge(RomImage.fromUnsigned(cartridge1), now::get);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a); // Enable RAM and RTC
+        mmu.setByte(0x4000, 0x09); // Select minutes register
+        now.set(7 * 60 * 1000);
+        assertEquals(0, mmu.readByte(0xa000));
+        mmu.setByte(0x6000, 0x00);
+        mmu.setByte(0x6000, 0x01);
+        assertEquals(7, mmu.readByte(0xa000));
+    }
+
+    @Test
+    public void test_selecting_rtc_register_leaves_ram_bank_untouched() {
+        MbcType3Cartridge cartridge = buildTestCartridge(cartridge1);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x4000, 0x02);
+        mmu.setByte(0xa000, 0x42);
+        mmu.setByte(0x4000, 0x08);
+        mmu.setByte(0xa000, 0x10); // Sets seconds
+        mmu.setByte(0x4000, 0x02);
+        assertEquals(0x42, mmu.readByte(0xa000));
+    }
+
+    @Test
+    public void test_export_includes_rtc_and_round_trips() {
+        AtomicLong now = new AtomicLong(0);
+        MbcType3Cartridge cartridge = new MbcType3Cartridge(RomImage.fromUnsigned(cartridge1), now::get);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x4000, 0x0a); // Hours
+        mmu.setByte(0xa000, 0x05);
+
+        MbcType3Cartridge restored = new MbcType3Cartridge(RomImage.fromUnsigned(cartridge1), now::get);
+        restored.importRamData(cartridge.exportRamData());
+        Mmu restoredMmu = getMmuForCartridge(restored);
+        restoredMmu.setByte(0x0000, 0x0a);
+        restoredMmu.setByte(0x4000, 0x0a);
+        restoredMmu.setByte(0x6000, 0x00);
+        restoredMmu.setByte(0x6000, 0x01);
+        assertEquals(0x05, restoredMmu.readByte(0xa000));
+    }
 }
@@ -0,0 +1,177 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMbcType5Cartridge {
+    private static final int NUM_ROM_BANKS = 512;
+    private static final int RAM_SIZE_CODE_32KB = 0x03;
+
+    @Test
+    public void test_loader_builds_mbc5_for_all_mbc5_types() {
+        for (int type = 0x19; type <= 0x1e; type++) {
+            Cartridge cartridge = CartridgeLoader.loadFrom(buildRom(type, 4, RAM_SIZE_CODE_32KB));
+            assertTrue(cartridge instanceof MbcType5Cartridge);
+        }
+    }
+
+    @Test
+    public void test_rom_1_starts_at_bank_1() {
+        Mmu mmu = getMmuForCartridge(buildCartridge(0x1b));
+        assertEquals(1, readBankId(mmu));
+    }
+
+    @Test
+    public void test_select_rom_bank_via_low_register() {
+        Mmu mmu = getMmuForCartridge(buildCartridge(0x1b));
+        mmu.setByte(0x2000, 0x7b);
+        assertEquals(0x7b, readBankId(mmu));
+    }
+
+    @Test
+    public void test_bank_0_can_be_mapped_into_rom_1() {
+        Mmu mmu = getMmuForCartridge(buildCartridge(0x1b));
+        mmu.setByte(0x2000, 0x00);
+        assertEquals(0, readBankId(mmu));
+    }
+
+    @Test
+    public void test_ninth_bank_bit_selects_upper_banks() {
+        Mmu mmu = getMmuForCartridge(buildCartridge(0x1b));
+        mmu.setByte(0x2000, 0x23);
+        mmu.setByte(0x3000, 0x01);
+        assertEquals(0x123, readBankId(mmu));
+        mmu.setByte(0x2000, 0x45);
+        assertEquals("Low register write should keep the ninth bit", 0x145, readBankId(mmu));
+        mmu.setByte(0x3000, 0x00);
+        assertEquals(0x045, readBankId(mmu));
+    }
+
+    @Test
+    public void test_bank_number_wraps_for_small_roms() {
+        Mmu mmu = getMmuForCartridge(new MbcType5Cartridge(buildRom(0x1b, 8, RAM_SIZE_CODE_32KB)));
+        mmu.setByte(0x2000, 0x0a);
+        assertEquals(2, readBankId(mmu));
+    }
+
+    @Test
+    public void test_rom_0_is_fixed() {
+        Mmu mmu = getMmuForCartridge(buildCartridge(0x1b));
+        mmu.setByte(0x2000, 0x55);
+        mmu.setByte(0x3000, 0x01);
+        assertEquals(0, mmu.readByte(0x0000));
+        assertEquals(0, mmu.readByte(0x0001));
+    }
+
+    @Test
+    public void test_ram_is_disabled_by_default() {
+        Mmu mmu = getMmuForCartridge(buildCartridge(0x1b));
+        mmu.setByte(0xa000, 0x12);
+        assertEquals(0xff, mmu.readByte(0xa000));
+    }
+
+    @Test
+    public void test_ram_banks_are_independent() {
+        Mmu mmu = getMmuForCartridge(buildCartridge(0x1b));
+        mmu.setByte(0x0000, 0x0a);
+        for (int bank = 0; bank < 4; bank++) {
+            mmu.setByte(0x4000, bank);
+            mmu.setByte(0xa123, 0x10 + bank);
+        }
+        for (int bank = 0; bank < 4; bank++) {
+            mmu.setByte(0x4000, bank);
+            assertEquals(0x10 + bank, mmu.readByte(0xa123));
+        }
+    }
+
+    @Test
+    public void test_cartridge_without_ram_reads_ff() {
+        Mmu mmu = getMmuForCartridge(buildCartridge(0x19));
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0xa000, 0x12);
+        assertEquals(0xff, mmu.readByte(0xa000));
+    }
+
+    @Test
+    public void test_rumble_bit_does_not_select_ram_bank() {
+        MbcType5Cartridge cartridge = buildCartridge(0x1e);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x4000, 0x01);
+        mmu.setByte(0xa000, 0x42);
+        mmu.setByte(0x4000, 0x09);
+        assertTrue(cartridge.isRumbling());
+        assertEquals(0x42, mmu.readByte(0xa000));
+        mmu.setByte(0x4000, 0x01);
+        assertFalse(cartridge.isRumbling());
+    }
+
+    @Test
+    public void test_ram_export_is_byte_dense_and_round_trips() {
+        MbcType5Cartridge cartridge = buildCartridge(0x1b);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x4000, 0x02);
+        mmu.setByte(0xa001, 0xbe);
+        byte[] exported = cartridge.exportRamData();
+        assertEquals(32 * 1024, exported.length);
+        assertEquals((byte) 0xbe, exported[2 * 0x2000 + 1]);
+
+        MbcType5Cartridge other = buildCartridge(0x1b);
+        other.importRamData(exported);
+        assertArrayEquals(exported, other.exportRamData());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test_import_rejects_wrong_size() {
+        buildCartridge(0x1b).importRamData(new byte[100]);
+    }
+
+    @Test
+    public void test_dirty_pages_are_numbered_across_banks() {
+        MbcType5Cartridge cartridge = buildCartridge(0x1b);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x4000, 0x03);
+        mmu.setByte(0xa456, 0x01);
+        BitSet expected = new BitSet();
+        expected.set(3 * 32 + 4);
+        assertEquals(expected, cartridge.getDirtyRamPages());
+        cartridge.clearDirtyRamPages();
+        assertTrue(cartridge.getDirtyRamPages().isEmpty());
+    }
+
+    private static MbcType5Cartridge buildCartridge(int type) {
+        return new MbcType5Cartridge(buildRom(type, NUM_ROM_BANKS, RAM_SIZE_CODE_32KB));
+    }
+
+    private static Mmu getMmuForCartridge(Cartridge cartridge) {
+        Mmu mmu = Mmu.build(true);
+        mmu.setBiosEnabled(false);
+        mmu.loadCartridge(cartridge);
+        return mmu;
+    }
+
+    private static int readBankId(Mmu mmu) {
+        return mmu.readByte(0x4000) | (mmu.readByte(0x4001) << 8);
+    }
+
+    // Each bank starts with its own bank number, little-endian.
+    private static RomImage buildRom(int type, int numBanks, int ramSizeCode) {
+        byte[] data = new byte[numBanks * Mmu.ROM_1_SIZE];
+        for (int bank = 0; bank < numBanks; bank++) {
+            data[bank * Mmu.ROM_1_SIZE] = (byte) bank;
+            data[bank * Mmu.ROM_1_SIZE + 1] = (byte) (bank >> 8);
+        }
+        data[0x0147] = (byte) type;
+        data[0x0149] = (byte) ramSizeCode;
+        return RomImage.wrap(data);
+    }
+}
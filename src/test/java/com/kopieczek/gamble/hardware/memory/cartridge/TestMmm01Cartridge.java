@@ -0,0 +1,101 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestMmm01Cartridge {
+    private static final int NUM_ROM_BANKS = 64;
+
+    @Test
+    public void test_loader_detects_menu_header_at_end_of_rom() {
+        assertTrue(CartridgeLoader.loadFrom(buildRom()) instanceof Mmm01Cartridge);
+    }
+
+    @Test
+    public void test_menu_header_with_bad_checksum_is_not_mmm01() {
+        byte[] data = buildRomData();
+        data[data.length - Mmm01Cartridge.MENU_SIZE + 0x014d] ^= 0x01;
+        assertFalse(Mmm01Cartridge.isMmm01(RomImage.wrap(data)));
+    }
+
+    @Test
+    public void test_loader_falls_back_to_header_at_start_of_rom() {
+        byte[] data = new byte[4 * Mmu.ROM_1_SIZE];
+        data[0x0147] = 0x0c;
+        data[0x0149] = 0x02; // 8KB RAM
+        data[data.length - Mmm01Cartridge.MENU_SIZE + 0x0149] = 0x77; // Not a valid RAM size code
+        Cartridge cartridge = CartridgeLoader.loadFrom(data);
+        assertTrue(cartridge instanceof Mmm01Cartridge);
+        assertEquals(8 * 1024, cartridge.exportRamData().length);
+    }
+
+    @Test
+    public void test_boots_into_menu_in_last_32kb() {
+        Mmu mmu = getMmuForCartridge(new Mmm01Cartridge(buildRom()));
+        assertEquals(NUM_ROM_BANKS - 2, mmu.readByte(0x0000));
+        assertEquals(NUM_ROM_BANKS - 1, mmu.readByte(0x4000));
+    }
+
+    @Test
+    public void test_mapping_selects_game_base() {
+        Mmu mmu = getMmuForCartridge(new Mmm01Cartridge(buildRom()));
+        mmu.setByte(0x2000, 0x20); // Mid bits select bank 32 onwards
+        mmu.setByte(0x0000, 0x40); // Map
+        assertEquals(32, mmu.readByte(0x0000));
+        assertEquals(33, mmu.readByte(0x4000));
+    }
+
+    @Test
+    public void test_game_can_switch_banks_within_its_slice() {
+        Mmu mmu = getMmuForCartridge(new Mmm01Cartridge(buildRom()));
+        mmu.setByte(0x2000, 0x20);
+        mmu.setByte(0x0000, 0x40);
+        mmu.setByte(0x2000, 0x05);
+        assertEquals(37, mmu.readByte(0x4000));
+        assertEquals(32, mmu.readByte(0x0000));
+    }
+
+    @Test
+    public void test_masked_bits_are_locked_after_mapping() {
+        Mmu mmu = getMmuForCartridge(new Mmm01Cartridge(buildRom()));
+        mmu.setByte(0x2000, 0x10);
+        mmu.setByte(0x6000, 0x20); // Mask bank bit 4
+        mmu.setByte(0x0000, 0x40);
+        assertEquals(16, mmu.readByte(0x0000));
+        mmu.setByte(0x2000, 0x03);
+        assertEquals(19, mmu.readByte(0x4000));
+    }
+
+    private static Mmu getMmuForCartridge(Cartridge cartridge) {
+        Mmu mmu = Mmu.build(true);
+        mmu.setBiosEnabled(false);
+        mmu.loadCartridge(cartridge);
+        return mmu;
+    }
+
+    private static RomImage buildRom() {
+        return RomImage.wrap(buildRomData());
+    }
+
+    // Each bank starts with its own bank number; the first game claims MBC1, and the menu at the end MMM01.
+    private static byte[] buildRomData() {
+        byte[] data = new byte[NUM_ROM_BANKS * Mmu.ROM_1_SIZE];
+        for (int bank = 0; bank < NUM_ROM_BANKS; bank++) {
+            data[bank * Mmu.ROM_1_SIZE] = (byte) bank;
+        }
+        data[0x0147] = 0x01;
+
+        int menu = data.length - Mmm01Cartridge.MENU_SIZE;
+        data[menu + 0x0147] = 0x0b;
+        int checksum = 0;
+        for (int addr = 0x0134; addr < 0x014d; addr++) {
+            checksum = checksum - (data[menu + addr] & 0xff) - 1;
+        }
+        data[menu + 0x014d] = (byte) checksum;
+        return data;
+    }
+}
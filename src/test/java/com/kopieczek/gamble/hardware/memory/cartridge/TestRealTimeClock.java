@@ -0,0 +1,120 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestRealTimeClock {
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    public void test_registers_are_zero_initially() {
+        RealTimeClock rtc = new RealTimeClock(now::get);
+        rtc.latch();
+        for (int register = 0x08; register <= 0x0c; register++) {
+            assertEquals(0, rtc.readRegister(register));
+        }
+    }
+
+    @Test
+    public void test_registers_only_change_when_latched() {
+        RealTimeClock rtc = new RealTimeClock(now::get);
+        rtc.latch();
+        now.addAndGet(5 * SECOND);
+        assertEquals(0, rtc.readRegister(0x08));
+        rtc.latch();
+        assertEquals(5, rtc.readRegister(0x08));
+    }
+
+    @Test
+    public void test_elapsed_time_is_split_across_registers() {
+        RealTimeClock rtc = new RealTimeClock(now::get);
+        now.addAndGet(300 * DAY + 13 * HOUR + 14 * MINUTE + 15 * SECOND + 999);
+        rtc.latch();
+        assertEquals(15, rtc.readRegister(0x08));
+        assertEquals(14, rtc.readRegister(0x09));
+        assertEquals(13, rtc.readRegister(0x0a));
+        assertEquals(300 & 0xff, rtc.readRegister(0x0b));
+        assertEquals(0x01, rtc.readRegister(0x0c));
+    }
+
+    @Test
+    public void test_partial_seconds_are_not_lost() {
+        RealTimeClock rtc = new RealTimeClock(now::get);
+        for (int i = 0; i < 4; i++) {
+            now.addAndGet(500);
+            rtc.latch();
+        }
+        assertEquals(2, rtc.readRegister(0x08));
+    }
+
+    @Test
+    public void test_day_counter_overflow_sets_sticky_carry() {
+        RealTimeClock rtc = new RealTimeClock(now::get);
+        now.addAndGet(513 * DAY);
+        rtc.latch();
+        assertEquals(1, rtc.readRegister(0x0b));
+        assertEquals(0x80, rtc.readRegister(0x0c));
+        now.addAndGet(DAY);
+        rtc.latch();
+        assertEquals(0x80, rtc.readRegister(0x0c));
+        rtc.writeRegister(0x0c, 0x00);
+        rtc.latch();
+        assertEquals(0x00, rtc.readRegister(0x0c));
+    }
+
+    @Test
+    public void test_written_value_keeps_counting() {
+        RealTimeClock rtc = new RealTimeClock(now::get);
+        rtc.writeRegister(0x0a, 23);
+        rtc.writeRegister(0x09, 59);
+        rtc.writeRegister(0x08, 59);
+        now.addAndGet(SECOND);
+        rtc.latch();
+        assertEquals(0, rtc.readRegister(0x08));
+        assertEquals(0, rtc.readRegister(0x09));
+        assertEquals(0, rtc.readRegister(0x0a));
+        assertEquals(1, rtc.readRegister(0x0b));
+    }
+
+    @Test
+    public void test_halted_clock_does_not_count() {
+        RealTimeClock rtc = new RealTimeClock(now::get);
+        now.addAndGet(10 * SECOND);
+        rtc.writeRegister(0x0c, 0x40);
+        now.addAndGet(HOUR);
+        rtc.latch();
+        assertEquals(10, rtc.readRegister(0x08));
+        assertEquals(0, rtc.readRegister(0x0a));
+        rtc.writeRegister(0x0c, 0x00);
+        now.addAndGet(SECOND);
+        rtc.latch();
+        assertEquals(11, rtc.readRegister(0x08));
+    }
+
+    @Test
+    public void test_clock_keeps_running_between_export_and_import() {
+        RealTimeClock rtc = new RealTimeClock(now::get);
+        now.addAndGet(2 * MINUTE);
+        byte[] exported = rtc.exportData();
+        now.addAndGet(HOUR);
+
+        RealTimeClock restored = new RealTimeClock(now::get);
+        restored.importData(exported);
+        restored.latch();
+        assertEquals(2, restored.readRegister(0x09));
+        assertEquals(1, restored.readRegister(0x0a));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test_import_rejects_wrong_size() {
+        new RealTimeClock(now::get).importData(new byte[12]);
+    }
+}
@@ -0,0 +1,85 @@
+package com.kopieczek.gamble.hardware.memory.cartridge;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestRomImage {
+    private static final int ROM_SIZE = 0x8000;
+
+    @Test
+    public void test_loaded_image_matches_file_contents() throws Exception {
+        byte[] data = buildTestRom();
+        RomImage image = RomImage.load(writeTempRom(data));
+        assertEquals(data.length, image.size());
+        for (int addr = 0; addr < data.length; addr++) {
+            assertEquals(data[addr] & 0xff, image.readByte(addr));
+        }
+    }
+
+    @Test
+    public void test_loading_same_file_twice_shares_image() throws Exception {
+        File f = writeTempRom(buildTestRom());
+        assertSame(RomImage.load(f), RomImage.load(f));
+    }
+
+    @Test
+    public void test_header_fields() throws Exception {
+        byte[] data = buildTestRom();
+        byte[] title = "TETRIS".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(title, 0, data, 0x0134, title.length);
+        data[0x0147] = 0x13;
+        data[0x0148] = 0x05;
+        data[0x0149] = 0x03;
+        CartridgeHeader header = RomImage.load(writeTempRom(data)).getHeader();
+        assertEquals("TETRIS", header.getTitle());
+        assertEquals(0x13, header.getCartridgeType());
+        assertEquals(1024 * 1024, header.getRomSizeInBytes());
+        assertEquals(32 * 1024, header.getRamSizeInBytes());
+    }
+
+    @Test
+    public void test_only_battery_cartridge_types_have_battery() {
+        byte[] data = buildTestRom();
+        data[0x0147] = 0x1a; // MBC5+RAM
+        assertFalse(CartridgeLoader.hasBattery(RomImage.wrap(data)));
+        data[0x0147] = 0x1b; // MBC5+RAM+BATTERY
+        assertTrue(CartridgeLoader.hasBattery(RomImage.wrap(data)));
+    }
+
+    @Test
+    public void test_load_type_0_cartridge_from_file() throws Exception {
+        byte[] data = buildTestRom();
+        data[0x0147] = 0x00;
+        Cartridge cartridge = CartridgeLoader.loadFrom(writeTempRom(data));
+        assertEquals(data[0x1234] & 0xff, cartridge.getRom0().readByte(0x1234));
+        assertEquals(data[0x5678] & 0xff, cartridge.getRom1().readByte(0x1678));
+    }
+
+    private static byte[] buildTestRom() {
+        byte[] data = new byte[ROM_SIZE];
+        for (int addr = 0; addr < data.length; addr++) {
+            data[addr] = (byte) (addr * 31);
+        }
+        // Blank out the header area so the title is null-terminated.
+        for (int addr = 0x0134; addr < 0x0150; addr++) {
+            data[addr] = 0x00;
+        }
+        return data;
+    }
+
+    private static File writeTempRom(byte[] data) throws IOException {
+        File f = File.createTempFile("test-rom", ".gb");
+        f.deleteOnExit();
+        Files.write(f.toPath(), data);
+        return f;
+    }
+}
@@ -0,0 +1,87 @@
+package com.kopieczek.gamble.hardware.memory.profiling;
+
+import com.kopieczek.gamble.hardware.memory.Memory;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestMemoryProfiler {
+    @Test
+    public void test_reads_and_writes_are_counted_per_page_and_source() {
+        MemoryProfiler profiler = new MemoryProfiler();
+        Mmu mmu = Mmu.build(true);
+        Memory cpu = profiler.instrument(mmu, MemoryProfiler.Source.CPU);
+        Memory gpu = profiler.instrument(mmu, MemoryProfiler.Source.GPU);
+        cpu.setByte(0xc012, 0x34);
+        cpu.readByte(0xc0ff);
+        gpu.readByte(0x8000);
+
+        MemoryProfile profile = profiler.snapshot();
+        assertEquals(1, profile.getPageWrites(MemoryProfiler.Source.CPU, 0xc0));
+        assertEquals(1, profile.getPageReads(MemoryProfiler.Source.CPU, 0xc0));
+        assertEquals(1, profile.getPageReads(MemoryProfiler.Source.GPU, 0x80));
+        assertEquals(0, profile.getPageReads(MemoryProfiler.Source.CPU, 0x80));
+    }
+
+    @Test
+    public void test_accesses_still_reach_underlying_memory() {
+        Mmu mmu = Mmu.build(true);
+        Memory cpu = new MemoryProfiler().instrument(mmu, MemoryProfiler.Source.CPU);
+        cpu.setByte(0xc012, 0x34);
+        assertEquals(0x34, mmu.readByte(0xc012));
+        assertEquals(0x34, cpu.readByte(0xc012));
+    }
+
+    @Test
+    public void test_io_registers_are_counted_individually() {
+        MemoryProfiler profiler = new MemoryProfiler();
+        Memory cpu = profiler.instrument(Mmu.build(true), MemoryProfiler.Source.CPU);
+        cpu.readByte(0xff44);
+        cpu.readByte(0xff44);
+        cpu.readByte(0xff41);
+
+        MemoryProfile profile = profiler.snapshot();
+        assertEquals(2, profile.getIoRegisterReads(MemoryProfiler.Source.CPU, 0xff44));
+        assertEquals(1, profile.getIoRegisterReads(MemoryProfiler.Source.CPU, 0xff41));
+        assertEquals(3, profile.getPageReads(MemoryProfiler.Source.CPU, 0xff));
+    }
+
+    @Test
+    public void test_snapshot_is_unaffected_by_later_accesses() {
+        MemoryProfiler profiler = new MemoryProfiler();
+        Memory cpu = profiler.instrument(Mmu.build(true), MemoryProfiler.Source.CPU);
+        cpu.readByte(0xc000);
+        MemoryProfile profile = profiler.snapshot();
+        cpu.readByte(0xc000);
+        assertEquals(1, profile.getPageReads(MemoryProfiler.Source.CPU, 0xc0));
+    }
+
+    @Test
+    public void test_csv_contains_only_rows_with_traffic() {
+        MemoryProfiler profiler = new MemoryProfiler();
+        Memory dma = profiler.instrument(Mmu.build(true), MemoryProfiler.Source.DMA);
+        dma.setByte(0xfe00, 0x01);
+        dma.readByte(0xff46);
+
+        StringWriter out = new StringWriter();
+        profiler.snapshot().writeCsv(out);
+        String[] lines = out.toString().split("\\R");
+        assertEquals(4, lines.length);
+        assertEquals("region,address,source,reads,writes", lines[0]);
+        assertEquals("page,0xfe00,DMA,0,1", lines[1]);
+        assertEquals("page,0xff00,DMA,1,0", lines[2]);
+        assertEquals("io,0xff46,DMA,1,0", lines[3]);
+    }
+
+    @Test
+    public void test_heatmap_has_one_cell_per_page_for_reads_and_writes() {
+        BufferedImage image = new MemoryProfiler().snapshot().renderHeatmap();
+        assertTrue(image.getWidth() > image.getHeight() * 2);
+        assertEquals(256, image.getHeight());
+    }
+}
@@ -0,0 +1,139 @@
+package com.kopieczek.gamble.hardware.scheduler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestScheduler {
+    @Test
+    public void test_component_is_not_stepped_before_its_event() {
+        MockComponent component = new MockComponent(100);
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(component);
+        scheduler.advance(99);
+        assertTrue(component.steps.isEmpty());
+    }
+
+    @Test
+    public void test_component_is_stepped_through_all_cycles_at_its_event() {
+        MockComponent component = new MockComponent(100);
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(component);
+        scheduler.advance(60);
+        scheduler.advance(44);
+        assertEquals(1, component.steps.size());
+        assertEquals(104, (int) component.steps.get(0));
+    }
+
+    @Test
+    public void test_component_is_requeued_at_its_next_event() {
+        MockComponent component = new MockComponent(100);
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(component);
+        scheduler.advance(100);
+        scheduler.advance(99);
+        assertEquals(1, component.steps.size());
+        scheduler.advance(1);
+        assertEquals(2, component.steps.size());
+        assertEquals(200, component.totalCycles());
+    }
+
+    @Test
+    public void test_components_are_stepped_independently() {
+        MockComponent fast = new MockComponent(10);
+        MockComponent slow = new MockComponent(1000);
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(fast);
+        scheduler.register(slow);
+        for (int i = 0; i < 50; i++) {
+            scheduler.advance(10);
+        }
+        assertEquals(50, fast.steps.size());
+        assertTrue(slow.steps.isEmpty());
+        assertEquals(10, scheduler.getCyclesUntilNextEvent());
+    }
+
+    @Test
+    public void test_sync_catches_component_up_immediately() {
+        MockComponent component = new MockComponent(Integer.MAX_VALUE);
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(component);
+        scheduler.advance(1234);
+        scheduler.sync(component);
+        assertEquals(1234, component.totalCycles());
+        scheduler.sync(component);
+        assertEquals("No cycles should be stepped twice", 1234, component.totalCycles());
+    }
+
+    @Test
+    public void test_sync_reschedules_component() {
+        MockComponent component = new MockComponent(Integer.MAX_VALUE);
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(component);
+        component.cyclesUntilNextEvent = 5;
+        scheduler.sync(component);
+        assertEquals(5, scheduler.getCyclesUntilNextEvent());
+    }
+
+    @Test
+    public void test_skipped_cycles_are_never_stepped() {
+        MockComponent component = new MockComponent(100);
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(component);
+        scheduler.advance(50);
+        scheduler.skip(component);
+        scheduler.advance(100);
+        assertEquals(100, component.totalCycles());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void test_cannot_register_component_twice() {
+        MockComponent component = new MockComponent(100);
+        Scheduler scheduler = new Scheduler();
+        scheduler.register(component);
+        scheduler.register(component);
+    }
+
+    @Test
+    public void test_sync_while_stepping_does_not_duplicate_component() {
+        Scheduler scheduler = new Scheduler();
+        MockComponent component = new MockComponent(10) {
+            @Override
+            public void stepAhead(int cycles) {
+                super.stepAhead(cycles);
+                scheduler.sync(this);
+            }
+        };
+        scheduler.register(component);
+        scheduler.advance(10);
+        scheduler.advance(10);
+        assertEquals(2, component.steps.size());
+    }
+
+    private static class MockComponent implements Clocked {
+        private final List<Integer> steps = new ArrayList<>();
+        private int cyclesUntilNextEvent;
+
+        MockComponent(int cyclesUntilNextEvent) {
+            this.cyclesUntilNextEvent = cyclesUntilNextEvent;
+        }
+
+        @Override
+        public void stepAhead(int cycles) {
+            steps.add(cycles);
+        }
+
+        @Override
+        public int getCyclesUntilNextEvent() {
+            return cyclesUntilNextEvent;
+        }
+
+        int totalCycles() {
+            return steps.stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+}
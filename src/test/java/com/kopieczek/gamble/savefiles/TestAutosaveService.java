@@ -0,0 +1,248 @@
+package com.kopieczek.gamble.savefiles;
+
+import com.kopieczek.gamble.hardware.governor.Governor;
+import com.kopieczek.gamble.hardware.memory.Mmu;
+import com.kopieczek.gamble.hardware.memory.cartridge.Cartridge;
+import com.kopieczek.gamble.hardware.memory.cartridge.CartridgeLoader;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestAutosaveService {
+    private static final String KEY = "test-rom.gb";
+    private static final int CYCLES_PER_CHECK = Governor.FREQUENCY_HZ / 4;
+    private static final int MBC1_RAM_BATTERY = 0x03;
+    private static final int MBC3_RAM_BATTERY = 0x13;
+    private static final int MBC5_RAM_BATTERY = 0x1b;
+    private static final int RAM_SIZE_CODE_32KB = 0x03;
+
+    @Test
+    public void test_existing_save_is_restored_into_cartridge() {
+        Cartridge source = buildCartridge();
+        Mmu sourceMmu = getMmuForCartridge(source);
+        sourceMmu.setByte(0x0000, 0x0a);
+        sourceMmu.setByte(0xa123, 0x42);
+        RecordingDb db = new RecordingDb();
+        db.putBytes(KEY, source.exportRamData());
+
+        Cartridge cartridge = buildCartridge();
+        new AutosaveService(cartridge, db, KEY);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        assertEquals(0x42, mmu.readByte(0xa123));
+    }
+
+    @Test
+    public void test_nothing_is_written_without_ram_changes() {
+        RecordingDb db = new RecordingDb();
+        AutosaveService autosave = new AutosaveService(buildCartridge(), db, KEY);
+        autosave.stepAhead(CYCLES_PER_CHECK * 4);
+        autosave.close();
+        assertEquals(0, db.writes);
+    }
+
+    @Test
+    public void test_write_waits_for_quiet_period() {
+        Cartridge cartridge = buildCartridge();
+        Mmu mmu = getMmuForCartridge(cartridge);
+        RecordingDb db = new RecordingDb();
+        AutosaveService autosave = new AutosaveService(cartridge, db, KEY);
+
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0xa000, 0x01);
+        autosave.stepAhead(CYCLES_PER_CHECK);
+        mmu.setByte(0xa001, 0x02);
+        autosave.stepAhead(CYCLES_PER_CHECK);
+        autosave.stepAhead(CYCLES_PER_CHECK);
+        autosave.close();
+
+        assertEquals(1, db.writes);
+        assertArrayEquals(cartridge.exportRamData(), db.getBytes(KEY).get());
+    }
+
+    @Test
+    public void test_only_changed_pages_are_needed_to_track_ram() {
+        Cartridge cartridge = buildCartridge();
+        Mmu mmu = getMmuForCartridge(cartridge);
+        RecordingDb db = new RecordingDb();
+        AutosaveService autosave = new AutosaveService(cartridge, db, KEY);
+
+        mmu.setByte(0x0000, 0x0a);
+        for (int bank = 0; bank < 4; bank++) {
+            mmu.setByte(0x4000, bank);
+            mmu.setByte(0xa000 + bank * 0x567, bank + 1);
+            autosave.stepAhead(CYCLES_PER_CHECK);
+        }
+        autosave.stepAhead(CYCLES_PER_CHECK);
+        autosave.close();
+
+        assertArrayEquals(cartridge.exportRamData(), db.getBytes(KEY).get());
+    }
+
+    @Test
+    public void test_close_flushes_unsaved_changes() {
+        Cartridge cartridge = buildCartridge();
+        Mmu mmu = getMmuForCartridge(cartridge);
+        RecordingDb db = new RecordingDb();
+        AutosaveService autosave = new AutosaveService(cartridge, db, KEY);
+
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0xbfff, 0x99);
+        autosave.close();
+
+        assertEquals(1, db.writes);
+        assertArrayEquals(cartridge.exportRamData(), db.getBytes(KEY).get());
+    }
+
+    @Test
+    public void test_cartridge_without_ram_is_never_saved() {
+        byte[] rom = new byte[2 * Mmu.ROM_1_SIZE];
+        Cartridge cartridge = CartridgeLoader.loadFrom(rom);
+        RecordingDb db = new RecordingDb();
+        AutosaveService autosave = new AutosaveService(cartridge, db, KEY);
+        autosave.stepAhead(CYCLES_PER_CHECK * 2);
+        autosave.close();
+        assertEquals(0, db.writes);
+    }
+
+    @Test
+    public void test_mbc1_ram_is_saved_one_byte_per_byte_and_restored() {
+        Cartridge cartridge = buildCartridge(MBC1_RAM_BATTERY);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        RecordingDb db = new RecordingDb();
+        AutosaveService autosave = new AutosaveService(cartridge, db, KEY);
+
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x6000, 0x01); // RAM banking mode
+        mmu.setByte(0x4000, 0x02);
+        mmu.setByte(0xa456, 0xfe);
+        autosave.stepAhead(CYCLES_PER_CHECK);
+        autosave.stepAhead(CYCLES_PER_CHECK);
+        autosave.close();
+
+        assertEquals(1, db.writes);
+        assertEquals(4 * Mmu.EXT_RAM_SIZE, db.getBytes(KEY).get().length);
+        assertArrayEquals(cartridge.exportRamData(), db.getBytes(KEY).get());
+
+        Cartridge restored = buildCartridge(MBC1_RAM_BATTERY);
+        new AutosaveService(restored, db, KEY);
+        Mmu restoredMmu = getMmuForCartridge(restored);
+        restoredMmu.setByte(0x0000, 0x0a);
+        restoredMmu.setByte(0x6000, 0x01);
+        restoredMmu.setByte(0x4000, 0x02);
+        assertEquals(0xfe, restoredMmu.readByte(0xa456));
+    }
+
+    @Test
+    public void test_mbc3_ram_is_saved_one_byte_per_byte_and_restored() {
+        Cartridge cartridge = buildCartridge(MBC3_RAM_BATTERY);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        RecordingDb db = new RecordingDb();
+        AutosaveService autosave = new AutosaveService(cartridge, db, KEY);
+
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x4000, 0x07);
+        mmu.setByte(0xbfff, 0x80);
+        autosave.close();
+
+        byte[] saved = db.getBytes(KEY).get();
+        assertEquals(8 * Mmu.EXT_RAM_SIZE, saved.length - 48); // RAM, then the clock
+        assertArrayEquals(cartridge.exportRamData(), saved);
+
+        Cartridge restored = buildCartridge(MBC3_RAM_BATTERY);
+        new AutosaveService(restored, db, KEY);
+        Mmu restoredMmu = getMmuForCartridge(restored);
+        restoredMmu.setByte(0x0000, 0x0a);
+        restoredMmu.setByte(0x4000, 0x07);
+        assertEquals(0x80, restoredMmu.readByte(0xbfff));
+    }
+
+    @Test
+    public void test_setting_the_clock_triggers_a_save() {
+        Cartridge cartridge = buildCartridge(MBC3_RAM_BATTERY);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        RecordingDb db = new RecordingDb();
+        AutosaveService autosave = new AutosaveService(cartridge, db, KEY);
+
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x4000, 0x08); // Seconds register
+        mmu.setByte(0xa000, 30);
+        autosave.stepAhead(CYCLES_PER_CHECK);
+        autosave.close();
+        assertEquals(1, db.writes);
+    }
+
+    @Test
+    public void test_saves_in_old_four_bytes_per_byte_layout_are_restored() {
+        byte[] legacy = new byte[4 * Mmu.EXT_RAM_SIZE * 4];
+        int bank = 1;
+        int address = 0x0123;
+        legacy[(bank * Mmu.EXT_RAM_SIZE + address) * 4] = 0x5a; // Little-endian int
+        RecordingDb db = new RecordingDb();
+        db.putBytes(KEY, legacy);
+
+        Cartridge cartridge = buildCartridge(MBC1_RAM_BATTERY);
+        new AutosaveService(cartridge, db, KEY);
+        Mmu mmu = getMmuForCartridge(cartridge);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0x6000, 0x01);
+        mmu.setByte(0x4000, bank);
+        assertEquals(0x5a, mmu.readByte(0xa000 + address));
+    }
+
+    @Test
+    public void test_unreadable_save_is_never_overwritten() {
+        RecordingDb db = new RecordingDb();
+        db.putBytes(KEY, new byte[100]); // Not a valid RAM size for any cartridge
+        int writesBefore = db.writes;
+
+        Cartridge cartridge = buildCartridge();
+        Mmu mmu = getMmuForCartridge(cartridge);
+        AutosaveService autosave = new AutosaveService(cartridge, db, KEY);
+        mmu.setByte(0x0000, 0x0a);
+        mmu.setByte(0xa000, 0x01);
+        autosave.stepAhead(CYCLES_PER_CHECK * 4);
+        autosave.close();
+        assertEquals(writesBefore, db.writes);
+        assertEquals(100, db.getBytes(KEY).get().length);
+    }
+
+    private static Cartridge buildCartridge() {
+        return buildCartridge(MBC5_RAM_BATTERY);
+    }
+
+    private static Cartridge buildCartridge(int cartridgeType) {
+        byte[] rom = new byte[4 * Mmu.ROM_1_SIZE];
+        rom[0x0147] = (byte) cartridgeType;
+        rom[0x0149] = (byte) RAM_SIZE_CODE_32KB;
+        return CartridgeLoader.loadFrom(rom);
+    }
+
+    private static Mmu getMmuForCartridge(Cartridge cartridge) {
+        Mmu mmu = Mmu.build(true);
+        mmu.setBiosEnabled(false);
+        mmu.loadCartridge(cartridge);
+        return mmu;
+    }
+
+    private static class RecordingDb implements SaveFileDb<String> {
+        private final Map<String, int[]> data = new HashMap<>();
+        private volatile int writes = 0;
+
+        @Override
+        public synchronized void put(String key, int[] ramData) {
+            data.put(key, ramData.clone());
+            writes++;
+        }
+
+        @Override
+        public synchronized Optional<int[]> get(String key) {
+            return Optional.ofNullable(data.get(key));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.kopieczek.gamble.savefiles;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestDirectorySaveFileDb {
+    private static int[] ARRAY_1 = new int[] {-10, 3, 255};
+    private static int[] ARRAY_2 = new int[] {100, 1, 2, 3, 0, 255, 19};
+    private static byte[] BYTES_1 = new byte[] {0x00, (byte) 0xff, 0x12, 0x34};
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void test_put_and_retrieve_one_array() throws Exception {
+        DirectorySaveFileDb db = getTempDb();
+        db.put("foo", ARRAY_1);
+        assertArrayEquals(ARRAY_1, db.get("foo").get());
+    }
+
+    @Test
+    public void test_retrieve_missing_key_results_in_empty_optional() throws Exception {
+        assertEquals(Optional.empty(), getTempDb().get("key that doesn't exist"));
+    }
+
+    @Test
+    public void test_overwrite_value() throws Exception {
+        DirectorySaveFileDb db = getTempDb();
+        db.put("foo", ARRAY_1);
+        db.put("foo", ARRAY_2);
+        assertArrayEquals(ARRAY_2, db.get("foo").get());
+    }
+
+    @Test
+    public void test_reload_db_with_two_keys() throws Exception {
+        File dir = getTempDir();
+        DirectorySaveFileDb first = DirectorySaveFileDb.initialize(dir);
+        first.put("foo", ARRAY_1);
+        first.put("bar", ARRAY_2);
+        DirectorySaveFileDb second = DirectorySaveFileDb.initialize(dir);
+        assertArrayEquals(ARRAY_1, second.get("foo").get());
+        assertArrayEquals(ARRAY_2, second.get("bar").get());
+    }
+
+    @Test
+    public void test_one_file_per_key() throws Exception {
+        File dir = getTempDir();
+        DirectorySaveFileDb db = DirectorySaveFileDb.initialize(dir);
+        db.put("Pokemon Red", ARRAY_1);
+        db.put("../../etc/passwd", ARRAY_2);
+        assertEquals(2, dir.listFiles().length);
+    }
+
+    @Test
+    public void test_bytes_round_trip() throws Exception {
+        DirectorySaveFileDb db = getTempDb();
+        db.putBytes("foo", BYTES_1);
+        assertArrayEquals(BYTES_1, db.getBytes("foo").get());
+        assertArrayEquals(new int[] {0x00, 0xff, 0x12, 0x34}, db.get("foo").get());
+    }
+
+    @Test
+    public void test_get_bytes_of_int_data_truncates_like_other_dbs() throws Exception {
+        DirectorySaveFileDb db = getTempDb();
+        db.put("foo", ARRAY_1);
+        HashMapDb reference = HashMapDb.initialize(new File(tempFolder.getRoot(), "reference.db"));
+        reference.put("foo", ARRAY_1);
+        assertArrayEquals(reference.getBytes("foo").get(), db.getBytes("foo").get());
+    }
+
+    @Test
+    public void test_ram_is_stored_one_byte_per_value() throws Exception {
+        File dir = getTempDir();
+        DirectorySaveFileDb db = DirectorySaveFileDb.initialize(dir);
+        db.put("foo", new int[0x8000]);
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].length() < 0x8000 + 64);
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void test_corrupted_file_fails_checksum() throws Exception {
+        File dir = getTempDir();
+        DirectorySaveFileDb db = DirectorySaveFileDb.initialize(dir);
+        db.put("foo", ARRAY_2);
+        try (RandomAccessFile file = new RandomAccessFile(dir.listFiles()[0], "rw")) {
+            file.seek(file.length() - 1);
+            file.write(0x42);
+        }
+        db.get("foo");
+    }
+
+    @Test
+    public void test_abandoned_temp_files_are_cleaned_up() throws Exception {
+        File dir = getTempDir();
+        File temp = new File(dir, "half-written.tmp");
+        Files.write(temp.toPath(), new byte[] {1, 2, 3});
+        DirectorySaveFileDb.initialize(dir);
+        assertFalse(temp.exists());
+    }
+
+    @Test
+    public void test_migrates_hash_map_db() throws Exception {
+        File legacyFile = new File(tempFolder.getRoot(), "test.db");
+        HashMapDb legacy = HashMapDb.initialize(legacyFile);
+        legacy.put("foo", ARRAY_1);
+        legacy.put("bar", ARRAY_2);
+
+        DirectorySaveFileDb db = DirectorySaveFileDb.initialize(getTempDir(), legacyFile);
+        assertArrayEquals(ARRAY_1, db.get("foo").get());
+        assertArrayEquals(ARRAY_2, db.get("bar").get());
+        assertFalse("Legacy DB should be moved aside once migrated", legacyFile.exists());
+    }
+
+    @Test
+    public void test_migration_does_not_overwrite_newer_saves() throws Exception {
+        File legacyFile = new File(tempFolder.getRoot(), "test.db");
+        HashMapDb.initialize(legacyFile).put("foo", ARRAY_1);
+
+        File dir = getTempDir();
+        DirectorySaveFileDb.initialize(dir).put("foo", ARRAY_2);
+        DirectorySaveFileDb db = DirectorySaveFileDb.initialize(dir, legacyFile);
+        assertArrayEquals(ARRAY_2, db.get("foo").get());
+    }
+
+    private File getTempDir() throws IOException {
+        return tempFolder.newFolder();
+    }
+
+    private DirectorySaveFileDb getTempDb() throws IOException {
+        return DirectorySaveFileDb.initialize(getTempDir());
+    }
+}